@@ -192,6 +192,11 @@ dependencies {
     testImplementation(files(packageNativeForHost))
 }
 
+tasks.test {
+    // benchmarks only run on request: ./gradlew test -Plibdatachannel.benchmark=true
+    systemProperty("libdatachannel.benchmark", project.findProperty("libdatachannel.benchmark")?.toString() ?: "false")
+}
+
 publishing.publications.withType<MavenPublication>().configureEach {
     pom {
         description = "${project.description}"
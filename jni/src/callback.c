@@ -11,10 +11,20 @@ struct jvm_callback* allocate_callback(JNIEnv* env, jobject callback) {
     }
     (*env)->GetJavaVM(env, &cb->vm);
     cb->instance = (*env)->NewGlobalRef(env, callback);
+    cb->peer_handle = -1;
+    cb->ring = NULL;
+    cb->channel = NULL;
+    cb->track = NULL;
     return cb;
 }
 
 void free_callback(JNIEnv* env, struct jvm_callback* callback) {
     (*env)->DeleteGlobalRef(env, callback->instance);
+    if (callback->channel != NULL) {
+        (*env)->DeleteGlobalRef(env, callback->channel);
+    }
+    if (callback->track != NULL) {
+        (*env)->DeleteGlobalRef(env, callback->track);
+    }
     free(callback);
 }
\ No newline at end of file
@@ -6,6 +6,13 @@
 struct jvm_callback {
     JavaVM* vm;
     jobject instance;
+    int peer_handle;
+    // optional event ring, see event_ring.h
+    char* ring;
+    // the DataChannel object of a channel callback, NULL for peer callbacks
+    jobject channel;
+    // the Track object of a track callback, NULL for peer and channel callbacks
+    jobject track;
 };
 
 struct jvm_callback* allocate_callback(JNIEnv* env, jobject callback);
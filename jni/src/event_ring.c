@@ -0,0 +1,95 @@
+#include "event_ring.h"
+#include <stdint.h>
+#include <string.h>
+#ifdef _WIN32
+#include <windows.h>
+#define ring_yield() SwitchToThread()
+#else
+#include <sched.h>
+#define ring_yield() sched_yield()
+#endif
+
+#define ALIGN_RECORD(n) (((n) + 7) & ~7)
+
+void event_ring_yield(void) {
+    ring_yield();
+}
+
+static void write_int(char* at, int32_t value) {
+    memcpy(at, &value, sizeof(value));
+}
+
+static bool is_closed(char* ring) {
+    return __atomic_load_n((int32_t*) (ring + EVENT_RING_CLOSED_OFFSET), __ATOMIC_ACQUIRE) != 0;
+}
+
+// checks whether the consumer freed up enough space for the given amount of bytes at the given position. Producers never wait for the
+// consumer: a handler running on the consumer thread may block on a libdatachannel call that waits for this very callback to return.
+static bool has_space(char* ring, int64_t position, int64_t length, int64_t capacity) {
+    int64_t* head = (int64_t*) (ring + EVENT_RING_HEAD_OFFSET);
+    return position + length - __atomic_load_n(head, __ATOMIC_ACQUIRE) <= capacity && !is_closed(ring);
+}
+
+bool event_ring_publish(char* ring, int type, int peer, int handle, int value, const char* a, int a_len, const char* b, int b_len) {
+    int32_t* lock = (int32_t*) (ring + EVENT_RING_LOCK_OFFSET);
+    int64_t* tail = (int64_t*) (ring + EVENT_RING_TAIL_OFFSET);
+    int64_t capacity = *(int32_t*) (ring + EVENT_RING_CAPACITY_OFFSET);
+    char* data = ring + EVENT_RING_HEADER_SIZE;
+
+    int payload_length = a_len + b_len;
+    int64_t record_length = ALIGN_RECORD(EVENT_RECORD_HEADER_SIZE + (int64_t) payload_length);
+    if (record_length > capacity || is_closed(ring)) {
+        return false;
+    }
+
+    // libdatachannel invokes callbacks from multiple threads, so producers are serialized
+    while (__atomic_exchange_n(lock, 1, __ATOMIC_ACQUIRE)) {
+        ring_yield();
+    }
+
+    bool published = false;
+    int64_t position = __atomic_load_n(tail, __ATOMIC_RELAXED);
+    int64_t index = position & (capacity - 1);
+    int64_t to_end = capacity - index;
+    if (record_length > to_end) {
+        // records are never split, pad the remainder and continue at the start
+        if (!has_space(ring, position, to_end, capacity)) {
+            goto unlock;
+        }
+        write_int(data + index, (int32_t) to_end);
+        write_int(data + index + 4, EVENT_PADDING);
+        position += to_end;
+        index = 0;
+        __atomic_store_n(tail, position, __ATOMIC_RELEASE);
+    }
+    if (!has_space(ring, position, record_length, capacity)) {
+        goto unlock;
+    }
+
+    char* record = data + index;
+    write_int(record, (int32_t) record_length);
+    write_int(record + 4, type);
+    write_int(record + 8, peer);
+    write_int(record + 12, handle);
+    write_int(record + 16, value);
+    write_int(record + 20, payload_length);
+    if (a_len > 0) {
+        memcpy(record + EVENT_RECORD_HEADER_SIZE, a, a_len);
+    }
+    if (b_len > 0) {
+        memcpy(record + EVENT_RECORD_HEADER_SIZE + a_len, b, b_len);
+    }
+    __atomic_store_n(tail, position + record_length, __ATOMIC_RELEASE);
+    published = true;
+
+unlock:
+    __atomic_store_n(lock, 0, __ATOMIC_RELEASE);
+    return published;
+}
+
+int event_string_length(const char* str) {
+    if (str == NULL) {
+        return 0;
+    }
+    return (int) strlen(str);
+}
@@ -0,0 +1,48 @@
+#ifndef LIBDATACHANNEL_JNI_EVENT_RING_H
+#define LIBDATACHANNEL_JNI_EVENT_RING_H
+
+#include <stdbool.h>
+
+// The memory layout is shared with tel.schich.libdatachannel.EventRing, keep both in sync!
+#define EVENT_RING_HEAD_OFFSET 0
+#define EVENT_RING_TAIL_OFFSET 64
+#define EVENT_RING_LOCK_OFFSET 128
+#define EVENT_RING_CLOSED_OFFSET 132
+#define EVENT_RING_CAPACITY_OFFSET 136
+#define EVENT_RING_HEADER_SIZE 192
+
+#define EVENT_RECORD_HEADER_SIZE 24
+
+enum event_type {
+    EVENT_PADDING = 0,
+    EVENT_LOCAL_DESCRIPTION = 1,
+    EVENT_LOCAL_CANDIDATE = 2,
+    EVENT_STATE_CHANGE = 3,
+    EVENT_ICE_STATE_CHANGE = 4,
+    EVENT_GATHERING_STATE_CHANGE = 5,
+    EVENT_SIGNALING_STATE_CHANGE = 6,
+    EVENT_DATA_CHANNEL = 7,
+    EVENT_TRACK = 8,
+    EVENT_CHANNEL_OPEN = 9,
+    EVENT_CHANNEL_CLOSED = 10,
+    EVENT_CHANNEL_ERROR = 11,
+    EVENT_CHANNEL_TEXT_MESSAGE = 12,
+    EVENT_CHANNEL_BINARY_MESSAGE = 13,
+    EVENT_CHANNEL_BUFFERED_AMOUNT_LOW = 14,
+    EVENT_CHANNEL_AVAILABLE = 15,
+    EVENT_LOG = 16,
+};
+
+/**
+ * Appends an event record to the ring. The payload is the concatenation of a and b.
+ * Never waits for the consumer. Returns false if the ring is closed or full or the record can never fit,
+ * in which case the caller must deliver the event by other means.
+ */
+bool event_ring_publish(char* ring, int type, int peer, int handle, int value, const char* a, int a_len, const char* b, int b_len);
+
+int event_string_length(const char* str);
+
+// gives up the processor while spinning on another thread
+void event_ring_yield(void);
+
+#endif //LIBDATACHANNEL_JNI_EVENT_RING_H
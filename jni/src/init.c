@@ -1,9 +1,17 @@
 #include <rtc/rtc.h>
 #include <jni.h>
+#include <jni-java-to-c.h>
 #include "global_jvm.h"
 #include "jni-c-to-java.h"
+#include "event_ring.h"
 
 static JavaVM* global_JVM;
+// optional event ring for log messages, see LibDataChannel.setLogRing
+static char* log_ring;
+// the number of log callbacks that might be writing to a log ring, counted separately for each generation of log_ring,
+// so setupLogRing only waits for the callbacks that could have seen the ring it replaced
+static int log_ring_generation;
+static int log_ring_writers[2];
 
 JNIEnv* get_jni_env() {
     // make sure it's initialized
@@ -25,6 +33,23 @@ void logger_callback(rtcLogLevel level, const char *message) {
     if (message == NULL) {
         return;
     }
+    // announced before the ring is loaded, so setupLogRing can wait for the writers of the ring it replaced
+    int* writers;
+    while (true) {
+        int generation = __atomic_load_n(&log_ring_generation, __ATOMIC_SEQ_CST);
+        writers = &log_ring_writers[generation & 1];
+        __atomic_add_fetch(writers, 1, __ATOMIC_SEQ_CST);
+        if (__atomic_load_n(&log_ring_generation, __ATOMIC_SEQ_CST) == generation) {
+            break;
+        }
+        __atomic_sub_fetch(writers, 1, __ATOMIC_RELEASE);
+    }
+    char* ring = __atomic_load_n(&log_ring, __ATOMIC_SEQ_CST);
+    bool published = ring != NULL && event_ring_publish(ring, EVENT_LOG, -1, -1, level, message, event_string_length(message), NULL, 0);
+    __atomic_sub_fetch(writers, 1, __ATOMIC_RELEASE);
+    if (published) {
+        return;
+    }
     JNIEnv* env = get_jni_env();
     if (env != NULL) {
         call_tel_schich_libdatachannel_LibDataChannel_log_cstr(env, level, message);
@@ -34,11 +59,55 @@ void logger_callback(rtcLogLevel level, const char *message) {
 JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *jvm, void *reserved)
 {
     global_JVM = jvm;
-    rtcInitLogger(RTC_LOG_VERBOSE, &logger_callback);
+    // LibDataChannel.initialize adjusts the level once the library is loaded
+    rtcInitLogger(RTC_LOG_WARNING, &logger_callback);
     rtcPreload();
     return JNI_VERSION_10;
 }
 
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_initLogger(JNIEnv *env, jclass clazz, jint level) {
+    // libdatachannel only adjusts the level of the existing logger when called again
+    rtcInitLogger(level, &logger_callback);
+    return RTC_ERR_SUCCESS;
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_setupLogRing(JNIEnv *env, jclass clazz, jobject ring) {
+    char* address = NULL;
+    if (ring != NULL) {
+        address = (*env)->GetDirectBufferAddress(env, ring);
+        if (address == NULL) {
+            return RTC_ERR_INVALID;
+        }
+    }
+    __atomic_store_n(&log_ring, address, __ATOMIC_SEQ_CST);
+    // callbacks that loaded the previous ring may still be writing to it, its memory must stay valid until they are done.
+    // Later callbacks count towards the next generation, and publishing never waits for the consumer, so this only waits for a few copies.
+    // Calls are serialized by LibDataChannel.setLogRing.
+    int previous = __atomic_fetch_add(&log_ring_generation, 1, __ATOMIC_SEQ_CST);
+    while (__atomic_load_n(&log_ring_writers[previous & 1], __ATOMIC_ACQUIRE) != 0) {
+        event_ring_yield();
+    }
+    return RTC_ERR_SUCCESS;
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcSetSctpSettings(JNIEnv *env, jclass clazz, jint recvBufferSize, jint sendBufferSize, jint maxChunksOnQueue, jint initialCongestionWindow, jint maxBurst, jint congestionControlModule, jint delayedSackTimeMs, jint minRetransmitTimeoutMs, jint maxRetransmitTimeoutMs, jint initialRetransmitTimeoutMs, jint maxRetransmitAttempts, jint heartbeatIntervalMs) {
+    rtcSctpSettings settings = {
+        .recvBufferSize = recvBufferSize,
+        .sendBufferSize = sendBufferSize,
+        .maxChunksOnQueue = maxChunksOnQueue,
+        .initialCongestionWindow = initialCongestionWindow,
+        .maxBurst = maxBurst,
+        .congestionControlModule = congestionControlModule,
+        .delayedSackTimeMs = delayedSackTimeMs,
+        .minRetransmitTimeoutMs = minRetransmitTimeoutMs,
+        .maxRetransmitTimeoutMs = maxRetransmitTimeoutMs,
+        .initialRetransmitTimeoutMs = initialRetransmitTimeoutMs,
+        .maxRetransmitAttempts = maxRetransmitAttempts,
+        .heartbeatIntervalMs = heartbeatIntervalMs,
+    };
+    return rtcSetSctpSettings(&settings);
+}
+
 JNIEXPORT void JNICALL JNI_OnUnload(JavaVM *jvm, void *reserved)
 {
     rtcCleanup();
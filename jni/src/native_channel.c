@@ -7,40 +7,63 @@
 #include "callback.h"
 
 void RTC_API handle_channel_open(int channelHandle, void *ptr) {
-    DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onChannelOpen, channelHandle);
+    PUBLISH_EVENT(EVENT_CHANNEL_OPEN, channelHandle, 0, NULL, 0, NULL, 0);
+    DISPATCH_CHANNEL_JNI(call_tel_schich_libdatachannel_DataChannel_onNativeOpen, call_tel_schich_libdatachannel_PeerConnectionListener_onChannelOpen, channelHandle);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetOpenCallback, handle_channel_open)
 
 void RTC_API handle_channel_closed(int channelHandle, void *ptr) {
-    DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onChannelClosed, channelHandle);
+    PUBLISH_EVENT(EVENT_CHANNEL_CLOSED, channelHandle, 0, NULL, 0, NULL, 0);
+    DISPATCH_CHANNEL_JNI(call_tel_schich_libdatachannel_DataChannel_onNativeClosed, call_tel_schich_libdatachannel_PeerConnectionListener_onChannelClosed, channelHandle);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetClosedCallback, handle_channel_closed)
 
 void RTC_API handle_channel_error(int channelHandle, const char *error, void *ptr) {
-    DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onChannelError_cstr, channelHandle, error);
+    PUBLISH_EVENT(EVENT_CHANNEL_ERROR, channelHandle, 0, error, event_string_length(error), NULL, 0);
+    DISPATCH_CHANNEL_JNI(call_tel_schich_libdatachannel_DataChannel_onNativeError_cstr, call_tel_schich_libdatachannel_PeerConnectionListener_onChannelError_cstr, channelHandle, error);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetErrorCallback, handle_channel_error)
 
 void RTC_API handle_channel_message(int channelHandle, const char *message, int size, void *ptr) {
+    // libdatachannel passes the length of text messages as -(length + 1), the text may contain NUL characters
+    int text_length = size < 0 ? -size - 1 : 0;
+    if (size < 0) {
+        PUBLISH_EVENT(EVENT_CHANNEL_TEXT_MESSAGE, channelHandle, 0, message, text_length, NULL, 0);
+    } else {
+        PUBLISH_EVENT(EVENT_CHANNEL_BINARY_MESSAGE, channelHandle, 0, message, size, NULL, 0);
+    }
+
     struct jvm_callback* cb = ptr;
     JNIEnv* env = get_jni_env();
+    if (env == NULL) return;
     if (size < 0) {
-        jstring text = (*env)->NewStringUTF(env, message);
-        call_tel_schich_libdatachannel_PeerConnectionListener_onChannelTextMessage(env, cb->instance, channelHandle, text);
+        // hand over the raw UTF-8 bytes, NewStringUTF would expect modified UTF-8
+        jobject text = (*env)->NewDirectByteBuffer(env, (void*)message, text_length);
+        if (cb->channel != NULL) {
+            call_tel_schich_libdatachannel_DataChannel_onNativeTextMessage(env, cb->channel, text);
+        } else {
+            call_tel_schich_libdatachannel_PeerConnectionListener_onChannelTextMessage(env, cb->instance, channelHandle, text);
+        }
     } else {
         jobject buffer = (*env)->NewDirectByteBuffer(env, (void*)message, size);
-        call_tel_schich_libdatachannel_PeerConnectionListener_onChannelBinaryMessage(env, cb->instance, channelHandle, buffer);
+        if (cb->channel != NULL) {
+            call_tel_schich_libdatachannel_DataChannel_onNativeBinaryMessage(env, cb->channel, buffer);
+        } else {
+            call_tel_schich_libdatachannel_PeerConnectionListener_onChannelBinaryMessage(env, cb->instance, channelHandle, buffer);
+        }
     }
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetMessageCallback, handle_channel_message)
 
 void RTC_API handle_channel_buffered_amount_low(int channelHandle, void *ptr) {
-    DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onChannelBufferedAmountLow, channelHandle);
+    PUBLISH_EVENT(EVENT_CHANNEL_BUFFERED_AMOUNT_LOW, channelHandle, 0, NULL, 0, NULL, 0);
+    DISPATCH_CHANNEL_JNI(call_tel_schich_libdatachannel_DataChannel_onNativeBufferedAmountLow, call_tel_schich_libdatachannel_PeerConnectionListener_onChannelBufferedAmountLow, channelHandle);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetBufferedAmountLowCallback, handle_channel_buffered_amount_low)
 
 void RTC_API handle_channel_available(int channelHandle, void *ptr) {
-    DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onChannelAvailable, channelHandle);
+    PUBLISH_EVENT(EVENT_CHANNEL_AVAILABLE, channelHandle, 0, NULL, 0, NULL, 0);
+    DISPATCH_CHANNEL_JNI(call_tel_schich_libdatachannel_DataChannel_onNativeAvailable, call_tel_schich_libdatachannel_PeerConnectionListener_onChannelAvailable, channelHandle);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetAvailableCallback, handle_channel_available)
 
@@ -100,7 +123,33 @@ JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcCl
 }
 
 JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcDeleteDataChannel(JNIEnv *env, jclass clazz, jint channelHandle) {
-    return rtcDeleteDataChannel(channelHandle);
+    struct jvm_callback* callback = rtcGetUserPointer(channelHandle);
+    int result = rtcDeleteDataChannel(channelHandle);
+    // the channel's own callback was allocated by setupDataChannelListener, the peer's callback is shared and freed with the peer
+    if (result >= 0 && callback != NULL && callback->channel != NULL) {
+        free_callback(env, callback);
+    }
+    return result;
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_setupDataChannelListener(JNIEnv *env, jclass clazz, jint channelHandle, jobject channel) {
+    // channels inherit the user pointer of their peer connection
+    struct jvm_callback* peer_callback = rtcGetUserPointer(channelHandle);
+    if (peer_callback == NULL) {
+        return RTC_ERR_INVALID;
+    }
+    if (peer_callback->channel != NULL) {
+        return RTC_ERR_SUCCESS;
+    }
+    struct jvm_callback* callback = allocate_callback(env, peer_callback->instance);
+    if (callback == NULL) {
+        return EXCEPTION_THROWN;
+    }
+    callback->peer_handle = peer_callback->peer_handle;
+    callback->ring = peer_callback->ring;
+    callback->channel = (*env)->NewGlobalRef(env, channel);
+    rtcSetUserPointer(channelHandle, callback);
+    return RTC_ERR_SUCCESS;
 }
 
 JNIEXPORT jboolean JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcIsClosed(JNIEnv *env, jclass clazz, jint channelHandle) {
@@ -131,6 +180,117 @@ JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcSe
     return rtcSendMessage(channelHandle, buffer_offset, length);
 }
 
+// checks whether another message of the given length may be sent without exceeding the buffered amount limit (<= 0 for no limit)
+static bool may_send(int channelHandle, int limit, int* buffered, int length) {
+    if (limit <= 0) {
+        return true;
+    }
+    if (*buffered + length <= limit) {
+        return true;
+    }
+    // the locally tracked amount does not see what was transmitted meanwhile, refresh it before giving up
+    int actual = rtcGetBufferedAmount(channelHandle);
+    if (actual < 0) {
+        return false;
+    }
+    *buffered = actual;
+    // a single message is always accepted into an empty buffer, otherwise it could never be sent
+    return actual == 0 || actual + length <= limit;
+}
+
+// the amount already buffered in the channel when a batch starts, the starting point for may_send
+static int initial_buffered(int channelHandle, int limit) {
+    if (limit <= 0) {
+        return 0;
+    }
+    int actual = rtcGetBufferedAmount(channelHandle);
+    // on failure, assume the limit is reached so that may_send asks again before each message
+    return actual < 0 ? limit : actual;
+}
+
+static jint send_batch_result(JNIEnv *env, int sent, int result) {
+    if (sent == 0 && result < 0) {
+        return WRAP_ERROR(env, result);
+    }
+    return sent;
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_sendMessageBatch(JNIEnv *env, jclass clazz, jint channelHandle, jobjectArray buffers, jintArray regions, jint count, jint bufferedAmountLimit) {
+    if (buffers == NULL || regions == NULL) {
+        return 0;
+    }
+    jint* c_regions = (*env)->GetIntArrayElements(env, regions, NULL);
+    if (c_regions == NULL) {
+        throw_native_exception(env, "failed to get the regions array");
+        return EXCEPTION_THROWN;
+    }
+
+    int buffered = initial_buffered(channelHandle, bufferedAmountLimit);
+    int sent = 0;
+    int result = RTC_ERR_SUCCESS;
+    for (; sent < count; sent++) {
+        jint offset = c_regions[sent * 2];
+        jint length = c_regions[sent * 2 + 1];
+        if (!may_send(channelHandle, bufferedAmountLimit, &buffered, length)) {
+            break;
+        }
+        jobject buffer = (*env)->GetObjectArrayElement(env, buffers, sent);
+        char* data = buffer == NULL ? NULL : (*env)->GetDirectBufferAddress(env, buffer);
+        (*env)->DeleteLocalRef(env, buffer);
+        if (data == NULL) {
+            result = RTC_ERR_INVALID;
+            break;
+        }
+        result = rtcSendMessage(channelHandle, data + offset, length);
+        if (result < 0) {
+            break;
+        }
+        buffered += length;
+    }
+    (*env)->ReleaseIntArrayElements(env, regions, c_regions, JNI_ABORT);
+
+    return send_batch_result(env, sent, result);
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_sendMessageSlices(JNIEnv *env, jclass clazz, jint channelHandle, jobject buffer, jintArray offsets, jintArray lengths, jint count, jint bufferedAmountLimit) {
+    if (buffer == NULL || offsets == NULL || lengths == NULL) {
+        return 0;
+    }
+    char* data = (*env)->GetDirectBufferAddress(env, buffer);
+    if (data == NULL) {
+        return 0;
+    }
+    jint* c_offsets = (*env)->GetIntArrayElements(env, offsets, NULL);
+    if (c_offsets == NULL) {
+        throw_native_exception(env, "failed to get the offsets array");
+        return EXCEPTION_THROWN;
+    }
+    jint* c_lengths = (*env)->GetIntArrayElements(env, lengths, NULL);
+    if (c_lengths == NULL) {
+        (*env)->ReleaseIntArrayElements(env, offsets, c_offsets, JNI_ABORT);
+        throw_native_exception(env, "failed to get the lengths array");
+        return EXCEPTION_THROWN;
+    }
+
+    int buffered = initial_buffered(channelHandle, bufferedAmountLimit);
+    int sent = 0;
+    int result = RTC_ERR_SUCCESS;
+    for (; sent < count; sent++) {
+        if (!may_send(channelHandle, bufferedAmountLimit, &buffered, c_lengths[sent])) {
+            break;
+        }
+        result = rtcSendMessage(channelHandle, data + c_offsets[sent], c_lengths[sent]);
+        if (result < 0) {
+            break;
+        }
+        buffered += c_lengths[sent];
+    }
+    (*env)->ReleaseIntArrayElements(env, offsets, c_offsets, JNI_ABORT);
+    (*env)->ReleaseIntArrayElements(env, lengths, c_lengths, JNI_ABORT);
+
+    return send_batch_result(env, sent, result);
+}
+
 JNIEXPORT jobject JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcReceiveMessage(JNIEnv *env, jclass clazz, jint channelHandle) {
     int size = 0;
     WRAP_ERROR(env, rtcReceiveMessage(channelHandle, NULL, &size));
@@ -169,6 +329,49 @@ JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcRe
     return size;
 }
 
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_receiveMessageBatch(JNIEnv *env, jclass clazz, jint channelHandle, jobject buffer, jint offset, jint capacity, jintArray lengths) {
+    if (buffer == NULL || lengths == NULL) {
+        return 0;
+    }
+    char* base = (*env)->GetDirectBufferAddress(env, buffer);
+    if (base == NULL) {
+        return 0;
+    }
+    jint max_count = (*env)->GetArrayLength(env, lengths);
+    jint* c_lengths = (*env)->GetIntArrayElements(env, lengths, NULL);
+    if (c_lengths == NULL) {
+        throw_native_exception(env, "failed to get the lengths array");
+        return EXCEPTION_THROWN;
+    }
+
+    char* data = base + offset;
+    int remaining = capacity;
+    int count = 0;
+    int result = RTC_ERR_SUCCESS;
+    int size = 0;
+    while (count < max_count) {
+        size = remaining;
+        result = rtcReceiveMessage(channelHandle, data, &size);
+        if (result != RTC_ERR_SUCCESS) {
+            break;
+        }
+        // text messages report -(length + 1) including the null terminator, which is overwritten by the next message
+        int length = size < 0 ? -size - 1 : size;
+        c_lengths[count++] = size;
+        data += length;
+        remaining -= length;
+    }
+    (*env)->ReleaseIntArrayElements(env, lengths, c_lengths, 0);
+
+    if (count > 0 || result == RTC_ERR_NOT_AVAIL) {
+        return count;
+    }
+    if (result == RTC_ERR_TOO_SMALL) {
+        return size < 0 ? size : -size;
+    }
+    return WRAP_ERROR(env, result);
+}
+
 JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcGetAvailableAmount(JNIEnv *env, jclass clazz, jint channelHandle) {
     return WRAP_ERROR(env, rtcGetAvailableAmount(channelHandle));
 }
@@ -2,115 +2,168 @@
 #include <rtc/rtc.h>
 #include <jni-java-to-c.h>
 #include <malloc.h>
+#include <stdint.h>
+#include <string.h>
 #include <jni-c-to-java.h>
 #include "util.h"
 #include "callback.h"
 
 void RTC_API handle_local_description(int pc, const char *sdp, const char *type, void *ptr) {
+    int sdp_length = event_string_length(sdp);
+    PUBLISH_EVENT(EVENT_LOCAL_DESCRIPTION, pc, sdp_length, sdp, sdp_length, type, event_string_length(type));
     DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onLocalDescription_cstr, sdp, type);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetLocalDescriptionCallback, handle_local_description)
 
 void RTC_API handle_local_candidate(int pc, const char *candidate, const char *mediaId, void *ptr) {
+    int candidate_length = event_string_length(candidate);
+    PUBLISH_EVENT(EVENT_LOCAL_CANDIDATE, pc, candidate_length, candidate, candidate_length, mediaId, event_string_length(mediaId));
     DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onLocalCandidate_cstr, candidate, mediaId);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetLocalCandidateCallback, handle_local_candidate)
 
 void RTC_API handle_state_change(int pc, rtcState state, void *ptr) {
+    PUBLISH_EVENT(EVENT_STATE_CHANGE, pc, state, NULL, 0, NULL, 0);
     DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onStateChange, state);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetStateChangeCallback, handle_state_change)
 
 void RTC_API handle_ice_state_change(int pc, rtcIceState state, void *ptr) {
+    PUBLISH_EVENT(EVENT_ICE_STATE_CHANGE, pc, state, NULL, 0, NULL, 0);
     DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onIceStateChange, state);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetIceStateChangeCallback, handle_ice_state_change)
 
 void RTC_API handle_gathering_state_change(int pc, rtcGatheringState state, void *ptr) {
+    PUBLISH_EVENT(EVENT_GATHERING_STATE_CHANGE, pc, state, NULL, 0, NULL, 0);
     DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onGatheringStateChange, state);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetGatheringStateChangeCallback, handle_gathering_state_change)
 
 void RTC_API handle_signaling_state_change(int pc, rtcSignalingState state, void *ptr) {
-    DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onGatheringStateChange, state);
+    PUBLISH_EVENT(EVENT_SIGNALING_STATE_CHANGE, pc, state, NULL, 0, NULL, 0);
+    DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onSignalingStateChange, state);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetSignalingStateChangeCallback, handle_signaling_state_change)
 
 void RTC_API handle_data_channel(int pc, int channelHandle, void *ptr) {
     rtcSetUserPointer(channelHandle, ptr);
+    PUBLISH_EVENT(EVENT_DATA_CHANNEL, channelHandle, 0, NULL, 0, NULL, 0);
     DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onDataChannel, channelHandle);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetDataChannelCallback, handle_data_channel)
 
 void RTC_API handle_track(int pc, int trackHandle, void *ptr) {
     rtcSetUserPointer(trackHandle, ptr);
+    PUBLISH_EVENT(EVENT_TRACK, trackHandle, 0, NULL, 0, NULL, 0);
     DISPATCH_JNI(call_tel_schich_libdatachannel_PeerConnectionListener_onTrack, trackHandle);
 }
 SET_CALLBACK_INTERFACE_IMPL(rtcSetTrackCallback, handle_track)
 
-JNIEXPORT jint JNICALL
-Java_tel_schich_libdatachannel_LibDataChannelNative_rtcCreatePeerConnection(JNIEnv *env, jclass clazz,
-                                                                            jobjectArray iceServers, jstring proxyServer,
-                                                                            jstring bindAddress, jint certificateType,
-                                                                            jint iceTransportPolicy,
-                                                                            jboolean enableIceTcp,
-                                                                            jboolean enableIceUdpMux,
-                                                                            jboolean disableAutoNegotiation,
-                                                                            jboolean forceMediaTransport,
-                                                                            jshort portRangeBegin, jshort portRangeEnd,
-                                                                            jint mtu, jint maxMessageSize) {
-    rtcConfiguration config = {
-            .certificateType = certificateType,
-            .iceTransportPolicy = iceTransportPolicy,
-            .enableIceTcp = enableIceTcp,
-            .enableIceUdpMux = enableIceUdpMux,
-            .disableAutoNegotiation = disableAutoNegotiation,
-            .forceMediaTransport = forceMediaTransport,
-            .portRangeBegin = portRangeBegin,
-            .portRangeEnd = portRangeEnd,
-            .mtu = mtu,
-            .maxMessageSize = maxMessageSize,
-    };
-    if (iceServers != NULL) {
-        config.iceServersCount = (*env)->GetArrayLength(env, iceServers);
-        if (config.iceServersCount > 0) {
-            config.iceServers = malloc(sizeof(char*) * config.iceServersCount);
-            if (config.iceServers == NULL) {
-                throw_native_exception(env, "Failed to allocate for ice servers!");
-                return EXCEPTION_THROWN;
-            }
+static char* copy_string(JNIEnv *env, jstring string) {
+    const char* chars = (*env)->GetStringUTFChars(env, string, NULL);
+    if (chars == NULL) {
+        return NULL;
+    }
+    size_t length = strlen(chars) + 1;
+    char* copy = malloc(length);
+    if (copy != NULL) {
+        memcpy(copy, chars, length);
+    }
+    (*env)->ReleaseStringUTFChars(env, string, chars);
+    return copy;
+}
 
-            for (int i = 0; i < config.iceServersCount; i++) {
-                config.iceServers[i] = (*env)->GetStringUTFChars(env, (*env)->GetObjectArrayElement(env, iceServers, i), NULL);
-            }
+static void free_configuration(rtcConfiguration* config) {
+    if (config->iceServers != NULL) {
+        for (int i = 0; i < config->iceServersCount; i++) {
+            free((char*) config->iceServers[i]);
         }
+        free(config->iceServers);
     }
-    if (proxyServer != NULL) {
-        config.proxyServer = (*env)->GetStringUTFChars(env, proxyServer, NULL);
-    }
-    if (bindAddress != NULL) {
-        config.bindAddress = (*env)->GetStringUTFChars(env, bindAddress, NULL);
+    free((char*) config->proxyServer);
+    free((char*) config->bindAddress);
+    free(config);
+}
+
+JNIEXPORT jlong JNICALL
+Java_tel_schich_libdatachannel_LibDataChannelNative_compileConfiguration(JNIEnv *env, jclass clazz,
+                                                                         jobjectArray iceServers, jstring proxyServer,
+                                                                         jstring bindAddress, jint certificateType,
+                                                                         jint iceTransportPolicy,
+                                                                         jboolean enableIceTcp,
+                                                                         jboolean enableIceUdpMux,
+                                                                         jboolean disableAutoNegotiation,
+                                                                         jboolean forceMediaTransport,
+                                                                         jshort portRangeBegin, jshort portRangeEnd,
+                                                                         jint mtu, jint maxMessageSize) {
+    // the strings are copied, so the configuration can outlive this call and be used for any number of peers
+    rtcConfiguration* config = calloc(1, sizeof(rtcConfiguration));
+    if (config == NULL) {
+        THROW_FAILED_MALLOC(env, config);
+        return 0;
     }
-    jint result = (jint) rtcCreatePeerConnection(&config);
+    config->certificateType = certificateType;
+    config->iceTransportPolicy = iceTransportPolicy;
+    config->enableIceTcp = enableIceTcp;
+    config->enableIceUdpMux = enableIceUdpMux;
+    config->disableAutoNegotiation = disableAutoNegotiation;
+    config->forceMediaTransport = forceMediaTransport;
+    config->portRangeBegin = portRangeBegin;
+    config->portRangeEnd = portRangeEnd;
+    config->mtu = mtu;
+    config->maxMessageSize = maxMessageSize;
 
     if (iceServers != NULL) {
-        (*env)->ReleasePrimitiveArrayCritical(env, iceServers, config.iceServers, 0);
+        int count = (*env)->GetArrayLength(env, iceServers);
+        if (count > 0) {
+            const char** servers = calloc(count, sizeof(char*));
+            if (servers == NULL) {
+                free_configuration(config);
+                THROW_FAILED_MALLOC(env, iceServers);
+                return 0;
+            }
+            config->iceServers = servers;
+            config->iceServersCount = count;
+            for (int i = 0; i < count; i++) {
+                jstring server = (*env)->GetObjectArrayElement(env, iceServers, i);
+                servers[i] = copy_string(env, server);
+                (*env)->DeleteLocalRef(env, server);
+                if (servers[i] == NULL) {
+                    free_configuration(config);
+                    THROW_FAILED_GET_STR(env, iceServers);
+                    return 0;
+                }
+            }
+        }
     }
     if (proxyServer != NULL) {
-        (*env)->ReleaseStringUTFChars(env, proxyServer, NULL);
+        config->proxyServer = copy_string(env, proxyServer);
+        if (config->proxyServer == NULL) {
+            free_configuration(config);
+            THROW_FAILED_GET_STR(env, proxyServer);
+            return 0;
+        }
     }
     if (bindAddress != NULL) {
-        (*env)->ReleaseStringUTFChars(env, bindAddress, NULL);
-    }
-
-    if (config.iceServers != NULL) {
-        for (int i = 0; i < config.iceServersCount; i++) {
-            (*env)->ReleaseStringUTFChars(env, (*env)->GetObjectArrayElement(env, iceServers, i), config.iceServers[i]);
+        config->bindAddress = copy_string(env, bindAddress);
+        if (config->bindAddress == NULL) {
+            free_configuration(config);
+            THROW_FAILED_GET_STR(env, bindAddress);
+            return 0;
         }
-        free(config.iceServers);
     }
+    return (jlong) (intptr_t) config;
+}
 
-    return result;
+JNIEXPORT void JNICALL
+Java_tel_schich_libdatachannel_LibDataChannelNative_freeConfiguration(JNIEnv *env, jclass clazz, jlong configuration) {
+    free_configuration((rtcConfiguration*) (intptr_t) configuration);
+}
+
+JNIEXPORT jint JNICALL
+Java_tel_schich_libdatachannel_LibDataChannelNative_rtcCreatePeerConnection(JNIEnv *env, jclass clazz, jlong configuration) {
+    return (jint) rtcCreatePeerConnection((const rtcConfiguration*) (intptr_t) configuration);
 }
 
 JNIEXPORT jint JNICALL
@@ -237,8 +290,26 @@ JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_setup
     if (jvm_callback == NULL) {
         return EXCEPTION_THROWN;
     }
+    jvm_callback->peer_handle = peerHandle;
     rtcSetUserPointer(peerHandle, jvm_callback);
 
     return RTC_ERR_SUCCESS;
     return RTC_ERR_SUCCESS;
 }
+
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_setupEventRing(JNIEnv *env, jclass clazz, jint peerHandle, jobject ring) {
+    struct jvm_callback* callback = rtcGetUserPointer(peerHandle);
+    if (callback == NULL) {
+        return RTC_ERR_INVALID;
+    }
+    if (ring == NULL) {
+        callback->ring = NULL;
+        return RTC_ERR_SUCCESS;
+    }
+    char* address = (*env)->GetDirectBufferAddress(env, ring);
+    if (address == NULL) {
+        return RTC_ERR_INVALID;
+    }
+    callback->ring = address;
+    return RTC_ERR_SUCCESS;
+}
@@ -1,7 +1,56 @@
 #include <jni.h>
 #include <rtc/rtc.h>
 #include <jni-java-to-c.h>
+#include "jni-c-to-java.h"
 #include "util.h"
+#include "callback.h"
+#include <stdint.h>
+
+void RTC_API handle_track_open(int trackHandle, void *ptr) {
+    DISPATCH_TRACK_JNI(call_tel_schich_libdatachannel_Track_onNativeOpen);
+}
+SET_CALLBACK_INTERFACE_IMPL_NAMED(rtcSetTrackOpenCallback, rtcSetOpenCallback, handle_track_open)
+
+void RTC_API handle_track_closed(int trackHandle, void *ptr) {
+    DISPATCH_TRACK_JNI(call_tel_schich_libdatachannel_Track_onNativeClosed);
+}
+SET_CALLBACK_INTERFACE_IMPL_NAMED(rtcSetTrackClosedCallback, rtcSetClosedCallback, handle_track_closed)
+
+void RTC_API handle_track_error(int trackHandle, const char *error, void *ptr) {
+    DISPATCH_TRACK_JNI(call_tel_schich_libdatachannel_Track_onNativeError_cstr, error);
+}
+SET_CALLBACK_INTERFACE_IMPL_NAMED(rtcSetTrackErrorCallback, rtcSetErrorCallback, handle_track_error)
+
+void RTC_API handle_track_message(int trackHandle, const char *message, int size, void *ptr) {
+    struct jvm_callback* cb = ptr;
+    if (cb == NULL || cb->track == NULL) return;
+    JNIEnv* env = get_jni_env();
+    if (env == NULL) return;
+    // media messages are binary, a negative size would indicate a string of -size - 1 bytes
+    jobject buffer = (*env)->NewDirectByteBuffer(env, (void*)message, size < 0 ? -size - 1 : size);
+    call_tel_schich_libdatachannel_Track_onNativeMessage(env, cb->track, buffer);
+    (*env)->DeleteLocalRef(env, buffer);
+}
+SET_CALLBACK_INTERFACE_IMPL_NAMED(rtcSetTrackMessageCallback, rtcSetMessageCallback, handle_track_message)
+
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_setupTrackListener(JNIEnv *env, jclass clazz, jint trackHandle, jobject track) {
+    // tracks inherit the user pointer of their peer connection
+    struct jvm_callback* peer_callback = rtcGetUserPointer(trackHandle);
+    if (peer_callback == NULL) {
+        return RTC_ERR_INVALID;
+    }
+    if (peer_callback->track != NULL) {
+        return RTC_ERR_SUCCESS;
+    }
+    struct jvm_callback* callback = allocate_callback(env, peer_callback->instance);
+    if (callback == NULL) {
+        return EXCEPTION_THROWN;
+    }
+    callback->peer_handle = peer_callback->peer_handle;
+    callback->track = (*env)->NewGlobalRef(env, track);
+    rtcSetUserPointer(trackHandle, callback);
+    return RTC_ERR_SUCCESS;
+}
 
 JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcAddTrack(JNIEnv *env, jclass clazz, jint peerHandle, jstring sdp) {
     const char* chars = NULL;
@@ -16,12 +65,100 @@ JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcAd
     return result;
 }
 
-JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcAddTrackEx(JNIEnv *env, jclass clazz, jint peerHandle, jint direction, jint codec) {
+static const char* get_optional_string(JNIEnv *env, jstring string) {
+    return string == NULL ? NULL : (*env)->GetStringUTFChars(env, string, NULL);
+}
+
+static void release_optional_string(JNIEnv *env, jstring string, const char* chars) {
+    if (string != NULL && chars != NULL) {
+        (*env)->ReleaseStringUTFChars(env, string, chars);
+    }
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcAddTrackEx(JNIEnv *env, jclass clazz, jint peerHandle, jint direction, jint codec, jint payloadType, jint ssrc, jstring mid, jstring name, jstring msid, jstring trackId, jstring profile) {
     rtcTrackInit init = {
             .direction = direction,
             .codec = codec,
+            .payloadType = payloadType,
+            .ssrc = (uint32_t) ssrc,
+            .mid = get_optional_string(env, mid),
+            .name = get_optional_string(env, name),
+            .msid = get_optional_string(env, msid),
+            .trackId = get_optional_string(env, trackId),
+            .profile = get_optional_string(env, profile),
     };
-    return rtcAddTrackEx(peerHandle, &init);
+    int result = rtcAddTrackEx(peerHandle, &init);
+    release_optional_string(env, mid, init.mid);
+    release_optional_string(env, name, init.name);
+    release_optional_string(env, msid, init.msid);
+    release_optional_string(env, trackId, init.trackId);
+    release_optional_string(env, profile, init.profile);
+    if (result >= 0) {
+        rtcSetUserPointer(result, rtcGetUserPointer(peerHandle));
+    }
+    return result;
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_setPacketizer(JNIEnv *env, jclass clazz, jint trackHandle, jint codec, jint ssrc, jstring cname, jint payloadType, jint clockRate, jint maxFragmentSize, jint nalSeparator, jint obuPacketization, jboolean srReporter, jint nackResponderPackets) {
+    // libdatachannel requires a cname for the RTP packetization config
+    if (cname == NULL) {
+        return RTC_ERR_INVALID;
+    }
+    const char* c_cname = (*env)->GetStringUTFChars(env, cname, NULL);
+    if (c_cname == NULL) {
+        return EXCEPTION_THROWN;
+    }
+    rtcPacketizerInit init = {
+            .ssrc = (uint32_t) ssrc,
+            .cname = c_cname,
+            .payloadType = (uint8_t) payloadType,
+            .clockRate = (uint32_t) clockRate,
+            .maxFragmentSize = (uint16_t) maxFragmentSize,
+            .nalSeparator = nalSeparator,
+            .obuPacketization = obuPacketization,
+    };
+    int result;
+    switch (codec) {
+        case RTC_CODEC_H264:
+            result = rtcSetH264Packetizer(trackHandle, &init);
+            break;
+        case RTC_CODEC_H265:
+            result = rtcSetH265Packetizer(trackHandle, &init);
+            break;
+        case RTC_CODEC_AV1:
+            result = rtcSetAV1Packetizer(trackHandle, &init);
+            break;
+        case RTC_CODEC_OPUS:
+            result = rtcSetOpusPacketizer(trackHandle, &init);
+            break;
+        case RTC_CODEC_AAC:
+            result = rtcSetAACPacketizer(trackHandle, &init);
+            break;
+        default:
+            result = RTC_ERR_INVALID;
+    }
+    (*env)->ReleaseStringUTFChars(env, cname, c_cname);
+    if (result >= 0 && srReporter) {
+        result = rtcChainRtcpSrReporter(trackHandle);
+    }
+    if (result >= 0 && nackResponderPackets > 0) {
+        result = rtcChainRtcpNackResponder(trackHandle, (unsigned int) nackResponderPackets);
+    }
+    return result;
+}
+
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_sendFrame(JNIEnv *env, jclass clazz, jint trackHandle, jobject data, jint offset, jint length, jlong timestamp) {
+    char* buffer = (*env)->GetDirectBufferAddress(env, data);
+    if (buffer == NULL) {
+        return RTC_ERR_INVALID;
+    }
+    // RTP timestamps wrap around at 32 bits
+    int result = rtcSetTrackRtpTimestamp(trackHandle, (uint32_t) timestamp);
+    if (result < 0) {
+        return result;
+    }
+    // the packetizer fragments the frame straight from the buffer
+    return rtcSendMessage(trackHandle, buffer + offset, length);
 }
 
 JNIEXPORT jstring JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcGetTrackDescription(JNIEnv *env, jclass clazz, jint trackHandle) {
@@ -39,5 +176,11 @@ JNIEXPORT jstring JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rt
 }
 
 JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_rtcDeleteTrack(JNIEnv *env, jclass clazz, jint trackHandle) {
-    return rtcDeleteTrack(trackHandle);
+    struct jvm_callback* callback = rtcGetUserPointer(trackHandle);
+    int result = rtcDeleteTrack(trackHandle);
+    // the track's own callback was allocated by setupTrackListener, the peer's callback is shared and freed with the peer
+    if (result >= 0 && callback != NULL && callback->track != NULL) {
+        free_callback(env, callback);
+    }
+    return result;
 }
@@ -4,6 +4,7 @@
 #include <rtc/rtc.h>
 #include <jni-c-to-java.h>
 #include "global_jvm.h"
+#include "event_ring.h"
 
 #define EXCEPTION_THROWN (-999)
 
@@ -29,11 +30,33 @@ void throw_native_exception(JNIEnv *env, char *msg);
     if (env == NULL) return; \
     target(env, cb->instance, args)
 
+// calls into the DataChannel if the callback belongs to a channel, otherwise into the peer listener, which looks the channel up by its handle
+#define DISPATCH_CHANNEL_JNI(channel_target, listener_target, handle, args...) \
+    struct jvm_callback* cb = ptr; \
+    JNIEnv* env = get_jni_env(); \
+    if (env == NULL) return; \
+    if (cb->channel != NULL) channel_target(env, cb->channel, ##args); \
+    else listener_target(env, cb->instance, handle, ##args)
+
+#define PUBLISH_EVENT(type, handle, value, a, a_len, b, b_len) \
+    struct jvm_callback* ring_cb = ptr; \
+    if (ring_cb->ring != NULL && event_ring_publish(ring_cb->ring, type, ring_cb->peer_handle, handle, value, a, a_len, b, b_len)) return
+
 #define SETUP_HANDLER(peer, api, target) \
     if (WRAP_ERROR(env, api(peer, target)) == EXCEPTION_THROWN) return EXCEPTION_THROWN
 
-#define SET_CALLBACK_INTERFACE_IMPL(api, target) \
-JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_##api(JNIEnv *env, jclass clazz, jint handle, jboolean set) { \
+// calls into the Track, events of tracks without a Track object are dropped
+#define DISPATCH_TRACK_JNI(target, args...) \
+    struct jvm_callback* cb = ptr; \
+    if (cb == NULL || cb->track == NULL) return; \
+    JNIEnv* env = get_jni_env(); \
+    if (env == NULL) return; \
+    target(env, cb->track, ##args)
+
+#define SET_CALLBACK_INTERFACE_IMPL_NAMED(name, api, target) \
+JNIEXPORT jint JNICALL Java_tel_schich_libdatachannel_LibDataChannelNative_##name(JNIEnv *env, jclass clazz, jint handle, jboolean set) { \
     return api(handle, set ? target : NULL); \
 }
+
+#define SET_CALLBACK_INTERFACE_IMPL(api, target) SET_CALLBACK_INTERFACE_IMPL_NAMED(api, api, target)
 #endif //LIBDATACHANNEL_JNI_UTIL_H
@@ -0,0 +1,101 @@
+package tel.schich.libdatachannel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implements the blocking receive methods of {@link DataChannel} on top of {@link DataChannel#onAvailable} and pull mode reception.
+ */
+final class BlockingReceiver {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final DataChannel channel;
+    private final ChannelSignal signal;
+    private final Lock lock;
+    private final int[] lengths;
+    private final DataChannelCallback.Available onAvailable;
+    private final DataChannelCallback.Closed onClosed;
+    private ByteBuffer buffer;
+    private volatile boolean closed;
+
+    BlockingReceiver(DataChannel channel) {
+        this.channel = channel;
+        this.signal = new ChannelSignal();
+        this.lock = new ReentrantLock();
+        this.lengths = new int[1];
+        this.buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+        this.onAvailable = c -> signal.signal();
+        this.onClosed = c -> {
+            closed = true;
+            signal.signal();
+        };
+        this.closed = false;
+        channel.onAvailable.register(onAvailable);
+        channel.onClosed.register(onClosed);
+    }
+
+    /**
+     * Receives the next message.
+     *
+     * @param timeoutNanos the maximum time to wait, negative to wait indefinitely
+     * @return the message or null if the timeout elapsed
+     */
+    ByteBuffer receive(long timeoutNanos) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeoutNanos;
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                final long generation = signal.generation();
+                final ByteBuffer message;
+                try {
+                    message = tryReceive();
+                } catch (RuntimeException e) {
+                    // a closed channel may already be gone natively
+                    if (closed) {
+                        throw new IllegalStateException("The channel is closed!", e);
+                    }
+                    throw e;
+                }
+                if (message != null) {
+                    return message;
+                }
+                if (closed) {
+                    throw new IllegalStateException("The channel is closed!");
+                }
+                final long remaining = timeoutNanos < 0 ? -1 : deadline - System.nanoTime();
+                if (timeoutNanos >= 0 && remaining <= 0) {
+                    return null;
+                }
+                signal.await(generation, remaining);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ByteBuffer tryReceive() {
+        while (true) {
+            buffer.clear();
+            final int count = channel.receiveBatch(buffer, lengths);
+            if (count == 0) {
+                return null;
+            }
+            if (count < 0) {
+                buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(-count) << 1);
+                continue;
+            }
+            buffer.flip();
+            final ByteBuffer message = ByteBuffer.allocate(buffer.remaining());
+            message.put(buffer).flip();
+            return message;
+        }
+    }
+
+    void close() {
+        closed = true;
+        channel.onAvailable.deregister(onAvailable);
+        channel.onClosed.deregister(onClosed);
+        signal.signal();
+    }
+}
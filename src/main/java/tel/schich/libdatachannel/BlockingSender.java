@@ -0,0 +1,144 @@
+package tel.schich.libdatachannel;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implements the paced blocking writes of {@link DataChannelByteChannel} and {@link DataChannel#transferFrom} on top of
+ * {@link DataChannel#onBufferedAmountLow}.
+ * <p>
+ * Writes are split into messages of at most the negotiated maximum message size and block while the channel's buffered amount is at or above
+ * the high watermark, until it dropped to the low watermark, which is requested as the channel's buffered amount low threshold until
+ * {@link #close()}.
+ * </p>
+ */
+final class BlockingSender {
+    private final DataChannel channel;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final ChannelSignal writable;
+    private final Lock lock;
+    private final DataChannelCallback.BufferedAmountLow onBufferedAmountLow;
+    private final DataChannelCallback.Closed onClosed;
+    private ByteBuffer stagingBuffer;
+    private int messageSize;
+    private volatile boolean channelClosed;
+    private volatile boolean open;
+
+    BlockingSender(DataChannel channel, int lowWatermark, int highWatermark) {
+        if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+            throw new IllegalArgumentException("The high watermark must be greater than the low watermark!");
+        }
+        this.channel = channel;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.writable = new ChannelSignal();
+        this.lock = new ReentrantLock();
+        this.onBufferedAmountLow = c -> writable.signal();
+        this.onClosed = c -> {
+            channelClosed = true;
+            writable.signal();
+        };
+        this.stagingBuffer = null;
+        this.messageSize = 0;
+        this.channelClosed = false;
+        this.open = true;
+
+        channel.requestBufferedAmountLowThreshold(lowWatermark);
+        channel.onBufferedAmountLow.register(onBufferedAmountLow);
+        channel.onClosed.register(onClosed);
+    }
+
+    int messageSize() {
+        int size = messageSize;
+        if (size == 0) {
+            size = channel.maxMessageSize();
+            final int remote = channel.peer().remoteMaxMessageSize();
+            if (remote > 0) {
+                size = Math.min(size, remote);
+            }
+            messageSize = size;
+        }
+        return size;
+    }
+
+    /**
+     * Sends all remaining bytes of the buffer. Heap buffers are staged through a reusable direct buffer, direct buffers are sent without copying.
+     *
+     * @param src the bytes to send
+     * @return the number of bytes sent
+     */
+    int write(ByteBuffer src) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            final int maxSize = messageSize();
+            int written = 0;
+            while (src.hasRemaining()) {
+                awaitWritable();
+                final int length = Math.min(src.remaining(), maxSize);
+                final ByteBuffer message;
+                if (src.isDirect()) {
+                    message = src.slice();
+                    message.limit(length);
+                } else {
+                    if (stagingBuffer == null) {
+                        stagingBuffer = ByteBuffer.allocateDirect(maxSize);
+                    }
+                    stagingBuffer.clear();
+                    stagingBuffer.put(src.duplicate().limit(src.position() + length)).flip();
+                    message = stagingBuffer;
+                }
+                channel.sendMessage(message);
+                src.position(src.position() + length);
+                written += length;
+            }
+            return written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void awaitWritable() throws IOException {
+        while (true) {
+            final long generation = writable.generation();
+            if (channelClosed) {
+                throw new ClosedChannelException();
+            }
+            if (channel.bufferedAmount() < highWatermark) {
+                return;
+            }
+            try {
+                writable.await(generation, -1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting on the data channel");
+            }
+            ensureOpen();
+        }
+    }
+
+    /**
+     * Releases the requested threshold and wakes up blocked writers. The data channel stays open.
+     */
+    void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        channel.onBufferedAmountLow.deregister(onBufferedAmountLow);
+        channel.onClosed.deregister(onClosed);
+        channel.releaseBufferedAmountLowThreshold(lowWatermark);
+        writable.signal();
+    }
+}
@@ -0,0 +1,70 @@
+package tel.schich.libdatachannel;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A signal that blocking adapters wait on until a channel callback fired.
+ * <p>
+ * libdatachannel's callbacks only fire on transitions, so waiters capture the {@link #generation()} before checking the channel and only wait
+ * if it did not change since, which avoids lost wakeups. Waiting parks through a {@link Condition}, which does not pin virtual threads.
+ * </p>
+ */
+final class ChannelSignal {
+    private final Lock lock;
+    private final Condition changed;
+    private long generation;
+
+    ChannelSignal() {
+        this.lock = new ReentrantLock();
+        this.changed = lock.newCondition();
+        this.generation = 0;
+    }
+
+    long generation() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void signal() {
+        lock.lock();
+        try {
+            generation++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the signal fired after the given generation was observed.
+     *
+     * @param observed     the generation observed before checking the channel
+     * @param timeoutNanos the maximum time to wait, negative to wait indefinitely
+     * @return false if the timeout elapsed before the signal fired
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    boolean await(long observed, long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = timeoutNanos;
+            while (generation == observed) {
+                if (timeoutNanos < 0) {
+                    changed.await();
+                } else if (remaining <= 0) {
+                    return false;
+                } else {
+                    remaining = changed.awaitNanos(remaining);
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package tel.schich.libdatachannel;
 
+import static tel.schich.libdatachannel.LibDataChannelNative.receiveMessageBatch;
 import static tel.schich.libdatachannel.LibDataChannelNative.rtcClose;
 import static tel.schich.libdatachannel.LibDataChannelNative.rtcDeleteDataChannel;
 import static tel.schich.libdatachannel.LibDataChannelNative.rtcGetAvailableAmount;
@@ -21,21 +22,32 @@ import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetClosedCallbac
 import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetErrorCallback;
 import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetMessageCallback;
 import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetOpenCallback;
+import static tel.schich.libdatachannel.LibDataChannelNative.sendMessageBatch;
+import static tel.schich.libdatachannel.LibDataChannelNative.sendMessageSlices;
 import static tel.schich.libdatachannel.Util.ensureDirect;
 import static tel.schich.libdatachannel.Util.wrapError;
 import static tel.schich.libdatachannel.exception.LibDataChannelException.ERR_INVALID;
 
+import tel.schich.jniaccess.JNIAccess;
+
 import java.io.Closeable;
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 
 /**
  * An RTC data channel, created from a {@link PeerConnection}.
  */
 public class DataChannel implements Closeable {
+    private static final long TRANSFER_MAPPING_SIZE = 64 * 1024 * 1024;
+
     private final PeerConnection peer;
     final int channelHandle;
 
@@ -46,16 +58,111 @@ public class DataChannel implements Closeable {
     public final EventListenerContainer<DataChannelCallback.BufferedAmountLow> onBufferedAmountLow;
     public final EventListenerContainer<DataChannelCallback.Available> onAvailable;
 
+    // reusable tasks for the events without payload
+    private final Runnable dispatchOpen;
+    private final Runnable dispatchClosed;
+    private final Runnable dispatchBufferedAmountLow;
+    private final Runnable dispatchAvailable;
+
+    // the buffered amount low thresholds needed by the flow controlled senders, counted by value, the lowest one is applied
+    private final TreeMap<Integer, Integer> requestedThresholds;
+    private int explicitThreshold;
+
+    private volatile SendQueue sendQueue;
+    private volatile BlockingReceiver receiver;
+
     DataChannel(final PeerConnection peer, final int channelHandle, final Executor executor) {
         this.peer = peer;
         this.channelHandle = channelHandle;
 
-        this.onOpen = new EventListenerContainer<>("ChannelOpen", set -> rtcSetOpenCallback(channelHandle, set), executor);
-        this.onClosed = new EventListenerContainer<>("ChannelClosed", set -> rtcSetClosedCallback(channelHandle, set), executor);
-        this.onError = new EventListenerContainer<>("ChannelError", set -> rtcSetErrorCallback(channelHandle, set), executor);
-        this.onMessage = new EventListenerContainer<>("ChannelMessage", set -> rtcSetMessageCallback(channelHandle, set), executor);
-        this.onBufferedAmountLow = new EventListenerContainer<>("ChannelBufferedAmountLow", set -> rtcSetBufferedAmountLowCallback(channelHandle, set), executor);
-        this.onAvailable = new EventListenerContainer<>("ChannelAvailable", set -> rtcSetAvailableCallback(channelHandle, set), executor);
+        this.onOpen = new EventListenerContainer<>("ChannelOpen", set -> rtcSetOpenCallback(channelHandle, set), executor, peer.dispatchQueue, DispatchQueue.Delivery.GUARANTEED);
+        this.onClosed = new EventListenerContainer<>("ChannelClosed", set -> rtcSetClosedCallback(channelHandle, set), executor, peer.dispatchQueue, DispatchQueue.Delivery.GUARANTEED);
+        this.onError = new EventListenerContainer<>("ChannelError", set -> rtcSetErrorCallback(channelHandle, set), executor, peer.dispatchQueue, DispatchQueue.Delivery.GUARANTEED);
+        this.onMessage = new EventListenerContainer<>("ChannelMessage", set -> rtcSetMessageCallback(channelHandle, set), executor, peer.dispatchQueue, DispatchQueue.Delivery.DROPPABLE);
+        this.onBufferedAmountLow = new EventListenerContainer<>("ChannelBufferedAmountLow", set -> rtcSetBufferedAmountLowCallback(channelHandle, set), executor, peer.dispatchQueue, DispatchQueue.Delivery.COALESCING);
+        this.onAvailable = new EventListenerContainer<>("ChannelAvailable", set -> rtcSetAvailableCallback(channelHandle, set), executor, peer.dispatchQueue, DispatchQueue.Delivery.COALESCING);
+
+        this.dispatchOpen = onOpen.dispatcher(DataChannelCallback.Open::onOpen, this);
+        this.dispatchClosed = onClosed.dispatcher(DataChannelCallback.Closed::onClosed, this);
+        this.dispatchBufferedAmountLow = onBufferedAmountLow.dispatcher(DataChannelCallback.BufferedAmountLow::onBufferedAmountLow, this);
+        this.dispatchAvailable = onAvailable.dispatcher(DataChannelCallback.Available::onAvailable, this);
+
+        this.requestedThresholds = new TreeMap<>();
+        this.explicitThreshold = -1;
+    }
+
+    private static void deliverError(DataChannelCallback.Error handler, DataChannel channel, String error) {
+        handler.onError(channel, error);
+    }
+
+    private static void deliverText(DataChannelCallback.Message handler, DataChannel channel, ByteBuffer text) {
+        // every handler gets its own view, so one handler consuming the buffer does not affect the others
+        handler.onUtf8Text(channel, text.duplicate());
+    }
+
+    private static void deliverBinary(DataChannelCallback.Message handler, DataChannel channel, ByteBuffer buffer) {
+        handler.onBinary(channel, buffer);
+    }
+
+    @JNIAccess
+    void onNativeOpen() {
+        onOpen.dispatch(dispatchOpen);
+    }
+
+    @JNIAccess
+    void onNativeClosed() {
+        onClosed.dispatch(dispatchClosed);
+    }
+
+    @JNIAccess
+    void onNativeError(String error) {
+        onError.invoke(DataChannel::deliverError, this, error);
+    }
+
+    @JNIAccess
+    void onNativeTextMessage(ByteBuffer message) {
+        if (onMessage.isInline()) {
+            onMessage.invoke(DataChannel::deliverText, this, message);
+            return;
+        }
+        // the native message memory is only valid during this call, so copy it before handing it to the executor
+        final MessageBufferPool pool = peer.messageBufferPool;
+        if (pool == null) {
+            final ByteBuffer text = ByteBuffer.allocate(message.remaining()).put(message);
+            text.flip();
+            onMessage.invoke(DataChannel::deliverText, this, text);
+        } else {
+            final ByteBuffer text = pool.copyOf(message);
+            onMessage.invoke(DataChannel::deliverText, this, text, () -> pool.release(text));
+        }
+    }
+
+    @JNIAccess
+    void onNativeBinaryMessage(ByteBuffer message) {
+        if (onMessage.isInline()) {
+            onMessage.invoke(DataChannel::deliverBinary, this, message);
+            return;
+        }
+        // the native message memory is only valid during this call, so copy it before handing it to the executor
+        final MessageBufferPool pool = peer.messageBufferPool;
+        if (pool == null) {
+            final ByteBuffer buffer = ByteBuffer.allocate(message.remaining()).put(message);
+            buffer.flip();
+            onMessage.invoke(DataChannel::deliverBinary, this, buffer);
+        } else {
+            final ByteBuffer buffer = pool.copyOf(message);
+            onMessage.invoke(DataChannel::deliverBinary, this, buffer, () -> pool.release(buffer));
+        }
+    }
+
+    @JNIAccess
+    void onNativeBufferedAmountLow() {
+        onBufferedAmountLow.dispatch(dispatchBufferedAmountLow);
+    }
+
+    @JNIAccess
+    void onNativeAvailable() {
+        onAvailable.dispatch(dispatchAvailable);
     }
 
     /**
@@ -81,18 +188,180 @@ public class DataChannel implements Closeable {
         sendMessage(data, data.position(), data.remaining());
     }
 
+    /**
+     * Sends multiple binary messages in the channel in a single native call. The remaining bytes of each buffer are sent as one message.
+     *
+     * @param messages the messages, each buffer must be direct
+     * @return the number of messages sent
+     */
+    public int sendMessages(ByteBuffer... messages) {
+        return sendMessages(0, messages);
+    }
+
+    /**
+     * Sends multiple binary messages in the channel in a single native call, stopping before the buffered amount would exceed the given limit.
+     * <p>
+     * The first message is always sent if nothing is buffered, so the caller always makes progress. The remaining messages can be sent once
+     * the buffered amount dropped, e.g. from {@link #onBufferedAmountLow}.
+     * </p>
+     *
+     * @param bufferedAmountLimit the maximum buffered amount in bytes, 0 or less for no limit
+     * @param messages            the messages, each buffer must be direct
+     * @return the number of messages sent, the messages in the front of the array were sent
+     */
+    public int sendMessages(int bufferedAmountLimit, ByteBuffer... messages) {
+        final int[] regions = new int[messages.length * 2];
+        for (int i = 0; i < messages.length; i++) {
+            final ByteBuffer message = messages[i];
+            ensureDirect(message);
+            regions[i * 2] = message.position();
+            regions[i * 2 + 1] = message.remaining();
+        }
+        return wrapError("sendMessages", sendMessageBatch(channelHandle, messages, regions, messages.length, bufferedAmountLimit));
+    }
+
+    /**
+     * Sends multiple binary messages stored in a single buffer in a single native call, stopping before the buffered amount would exceed the
+     * given limit.
+     * <p>
+     * The first message is always sent if nothing is buffered, so the caller always makes progress. The buffer's position is not changed.
+     * </p>
+     *
+     * @param data                a direct buffer holding the messages
+     * @param offsets             the absolute offset of each message within the buffer
+     * @param lengths             the length of each message
+     * @param count               the number of messages to send
+     * @param bufferedAmountLimit the maximum buffered amount in bytes, 0 or less for no limit
+     * @return the number of messages sent
+     */
+    public int sendMessages(ByteBuffer data, int[] offsets, int[] lengths, int count, int bufferedAmountLimit) {
+        ensureDirect(data);
+        if (count < 0 || count > offsets.length || count > lengths.length) {
+            throw new IndexOutOfBoundsException("count " + count + " exceeds the offsets or lengths");
+        }
+        final int limit = data.limit();
+        for (int i = 0; i < count; i++) {
+            if (offsets[i] < 0 || lengths[i] < 0 || offsets[i] > limit - lengths[i]) {
+                throw new IndexOutOfBoundsException("message " + i + " exceeds the buffer limit " + limit);
+            }
+        }
+        return wrapError("sendMessages", sendMessageSlices(channelHandle, data, offsets, lengths, count, bufferedAmountLimit));
+    }
+
+    private SendQueue sendQueue() {
+        SendQueue queue = sendQueue;
+        if (queue == null) {
+            synchronized (this) {
+                queue = sendQueue;
+                if (queue == null) {
+                    queue = new SendQueue(this);
+                    sendQueue = queue;
+                }
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Sends a binary message in the channel once the buffered amount allows it.
+     * <p>
+     * The message is sent right away while the buffered amount is below the high watermark, otherwise it is queued until the buffered amount
+     * dropped to the low watermark (see {@link #sendQueueWatermarks(int, int, int)}). The buffer must not be modified until the returned future
+     * completed. If the queue is full, the future fails with an {@link IllegalStateException}.
+     * </p>
+     * <p>
+     * The first call requests the low watermark as the {@link #bufferedAmountLowThreshold(int)} of this channel and registers a listener in
+     * {@link #onBufferedAmountLow}, which must not be removed with {@link EventListenerContainer#deregisterAll()}.
+     * </p>
+     *
+     * @param data the data, must be direct
+     * @return a future that completes once the message was handed to libdatachannel
+     */
+    public CompletableFuture<Void> sendAsync(ByteBuffer data) {
+        ensureDirect(data);
+        return sendQueue().enqueue(data);
+    }
+
+    /**
+     * Configures the queue used by {@link #sendAsync(ByteBuffer)}.
+     * <p>
+     * Defaults to a capacity of {@value SendQueue#DEFAULT_CAPACITY} messages with watermarks of {@value SendQueue#DEFAULT_LOW_WATERMARK} and
+     * {@value SendQueue#DEFAULT_HIGH_WATERMARK} bytes.
+     * </p>
+     *
+     * @param capacity      the maximum number of queued messages
+     * @param lowWatermark  the buffered amount at which queued messages are sent again
+     * @param highWatermark the buffered amount at which messages are queued, must be greater than the low watermark
+     */
+    public void sendQueueWatermarks(int capacity, int lowWatermark, int highWatermark) {
+        sendQueue().configure(capacity, lowWatermark, highWatermark);
+    }
+
+    /**
+     * Returns the number of messages queued by {@link #sendAsync(ByteBuffer)} that have not been handed to libdatachannel yet.
+     *
+     * @return the number of queued messages
+     */
+    public int queuedMessages() {
+        final SendQueue queue = sendQueue;
+        return queue == null ? 0 : queue.size();
+    }
+
     /**
      * Sends a text message in the channel
      *
      * @param message the message
      */
     public void sendMessage(String message) {
-        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
-        ByteBuffer data = ByteBuffer.allocateDirect(bytes.length + 1);
-        data.put(bytes);
-        data.put((byte)0);
-        data.flip();
-        sendMessage(data, data.position(), -1);
+        sendMessage(TextEncoder.local().encode(message), 0, -1);
+    }
+
+    /**
+     * Sends a text message in the channel that is already encoded as UTF-8
+     *
+     * @param utf8 the UTF-8 encoded text without null terminator
+     */
+    public void sendText(ByteBuffer utf8) {
+        sendMessage(TextEncoder.local().terminate(utf8), 0, -1);
+    }
+
+    /**
+     * Sends a region of a file as binary messages of at most the negotiated maximum message size, blocking until all messages were handed to
+     * libdatachannel.
+     * <p>
+     * The file is memory-mapped in chunks and the messages are sent straight from the mapping, so the data never passes through the Java heap.
+     * Sending is paced like {@link DataChannelByteChannel}, which requests its low watermark as the {@link #bufferedAmountLowThreshold(int)} of
+     * this channel.
+     * </p>
+     *
+     * @param file     the file to read from
+     * @param position the position in the file to start at
+     * @param count    the maximum number of bytes to send
+     * @return the number of bytes sent, which is less than count if the file ends before
+     * @throws IOException if the file could not be mapped or the transfer was interrupted
+     */
+    public long transferFrom(FileChannel file, long position, long count) throws IOException {
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException("position and count must not be negative!");
+        }
+        final long end = Math.min(file.size(), position + count);
+        long offset = position;
+        // only the write side of a DataChannelByteChannel, so no read buffer or onAvailable listener is set up for the transfer
+        final BlockingSender sender = new BlockingSender(this, DataChannelByteChannel.DEFAULT_LOW_WATERMARK,
+                DataChannelByteChannel.DEFAULT_HIGH_WATERMARK);
+        try {
+            while (offset < end) {
+                final long size = Math.min(end - offset, TRANSFER_MAPPING_SIZE);
+                final MappedByteBuffer mapping = file.map(FileChannel.MapMode.READ_ONLY, offset, size);
+                while (mapping.hasRemaining()) {
+                    sender.write(mapping);
+                }
+                offset += size;
+            }
+        } finally {
+            sender.close();
+        }
+        return offset - position;
     }
 
     /**
@@ -104,6 +373,14 @@ public class DataChannel implements Closeable {
      */
     @Override
     public void close() {
+        final SendQueue queue = sendQueue;
+        if (queue != null) {
+            queue.close();
+        }
+        final BlockingReceiver blockingReceiver = receiver;
+        if (blockingReceiver != null) {
+            blockingReceiver.close();
+        }
         if (rtcClose(channelHandle) != ERR_INVALID) {
             rtcDeleteDataChannel(channelHandle);
         }
@@ -152,11 +429,55 @@ public class DataChannel implements Closeable {
      * <p>
      * The initial threshold is 0, meaning the callback is called each time the buffered amount goes back to zero after being non-zero.
      * </p>
+     * <p>
+     * While {@link #sendAsync(ByteBuffer)}, {@link #transferFrom(FileChannel, long, long)}, a {@link DataChannelByteChannel} or a
+     * {@link DataChannelSubscriber} wait for the buffered amount to drop, the lowest of their low watermarks and this amount is applied.
+     * </p>
      *
      * @param amount the amount
      */
     public void bufferedAmountLowThreshold(int amount) {
-        wrapError("rtcSetBufferedAmountLowThreshold", rtcSetBufferedAmountLowThreshold(channelHandle, amount));
+        synchronized (requestedThresholds) {
+            explicitThreshold = amount;
+            wrapError("rtcSetBufferedAmountLowThreshold", applyBufferedAmountLowThreshold());
+        }
+    }
+
+    /**
+     * Requests a buffered amount low threshold of at most the given amount until it is released again with
+     * {@link #releaseBufferedAmountLowThreshold(int)}.
+     *
+     * @param amount the amount
+     */
+    void requestBufferedAmountLowThreshold(int amount) {
+        synchronized (requestedThresholds) {
+            requestedThresholds.merge(amount, 1, Integer::sum);
+            wrapError("rtcSetBufferedAmountLowThreshold", applyBufferedAmountLowThreshold());
+        }
+    }
+
+    /**
+     * Releases a threshold requested with {@link #requestBufferedAmountLowThreshold(int)}.
+     *
+     * @param amount the amount
+     */
+    void releaseBufferedAmountLowThreshold(int amount) {
+        synchronized (requestedThresholds) {
+            requestedThresholds.computeIfPresent(amount, (k, count) -> count == 1 ? null : count - 1);
+            // failures are ignored, they only happen once the channel is gone
+            applyBufferedAmountLowThreshold();
+        }
+    }
+
+    private int applyBufferedAmountLowThreshold() {
+        int amount = Math.max(explicitThreshold, 0);
+        if (!requestedThresholds.isEmpty()) {
+            amount = requestedThresholds.firstKey();
+            if (explicitThreshold >= 0) {
+                amount = Math.min(amount, explicitThreshold);
+            }
+        }
+        return rtcSetBufferedAmountLowThreshold(channelHandle, amount);
     }
 
     /**
@@ -184,6 +505,98 @@ public class DataChannel implements Closeable {
         return rtcReceiveMessageInto(channelHandle, buffer, buffer.position(), buffer.remaining());
     }
 
+    private BlockingReceiver receiver() {
+        BlockingReceiver r = receiver;
+        if (r == null) {
+            synchronized (this) {
+                r = receiver;
+                if (r == null) {
+                    r = new BlockingReceiver(this);
+                    receiver = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Waits for the next message and returns it.
+     * <p>
+     * The calling thread parks until {@link #onAvailable} fires, so this is suitable for virtual threads. This may only be called if the
+     * {@link #onMessage} callback is not set. Text messages are returned as their UTF-8 bytes.
+     * </p>
+     *
+     * @return the message in a new heap buffer
+     * @throws InterruptedException  if the thread was interrupted while waiting
+     * @throws IllegalStateException if the channel is closed
+     */
+    public ByteBuffer take() throws InterruptedException {
+        return receiver().receive(-1);
+    }
+
+    /**
+     * Waits up to the given timeout for the next message and returns it, like {@link #take()}.
+     *
+     * @param timeout the maximum time to wait
+     * @return the message in a new heap buffer or empty if the timeout elapsed
+     * @throws InterruptedException  if the thread was interrupted while waiting
+     * @throws IllegalStateException if the channel is closed
+     */
+    public Optional<ByteBuffer> poll(Duration timeout) throws InterruptedException {
+        return Optional.ofNullable(receiver().receive(Math.max(0, timeout.toNanos())));
+    }
+
+    /**
+     * Receives as many pending messages as fit into the buffer in a single native call.
+     * <p>
+     * The messages are packed back to back starting at the buffer's position, which is advanced past the last message. For each message, an
+     * entry is written to lengths: the length of a binary message, or {@code -(length + 1)} for a text message (without null terminator), see
+     * {@link #isTextMessage(int)} and {@link #messageLength(int)}. At most {@code lengths.length} messages are received.
+     * </p>
+     * <p>
+     * The may only be called if the {@link #onMessage} callback is not set.
+     * </p>
+     *
+     * @param buffer a direct buffer to receive the messages into
+     * @param lengths receives the length entry of each message
+     * @return the number of messages received or the negative size of the next message if the buffer was too small to hold it
+     */
+    public int receiveBatch(ByteBuffer buffer, int[] lengths) {
+        ensureDirect(buffer);
+        final int count = receiveMessageBatch(channelHandle, buffer, buffer.position(), buffer.remaining(), lengths);
+        if (count > 0) {
+            int received = 0;
+            for (int i = 0; i < count; i++) {
+                received += messageLength(lengths[i]);
+            }
+            buffer.position(buffer.position() + received);
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether a length entry produced by {@link #receiveBatch(ByteBuffer, int[])} describes a text message.
+     *
+     * @param lengthEntry the length entry
+     * @return true for text messages, false for binary messages
+     */
+    public static boolean isTextMessage(int lengthEntry) {
+        return lengthEntry < 0;
+    }
+
+    /**
+     * Returns the number of bytes of a message described by a length entry produced by {@link #receiveBatch(ByteBuffer, int[])}.
+     *
+     * @param lengthEntry the length entry
+     * @return the message length in bytes
+     */
+    public static int messageLength(int lengthEntry) {
+        if (lengthEntry < 0) {
+            return -lengthEntry - 1;
+        }
+        return lengthEntry;
+    }
+
     /**
      * Returns the available amount, i.e. the total size of messages pending reception with {@link #receiveMessage}.
      * <p>
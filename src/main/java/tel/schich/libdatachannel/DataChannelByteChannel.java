@@ -0,0 +1,193 @@
+package tel.schich.libdatachannel;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A blocking {@link ByteChannel} view of a {@link DataChannel}.
+ * <p>
+ * Writes are split into messages of at most the negotiated maximum message size and block while the channel's buffered amount is at or above
+ * the high watermark, until it dropped to the low watermark, which is requested as the channel's buffered amount low threshold. Reads
+ * concatenate the payloads of the received messages, so message boundaries are not preserved, and return end-of-stream once the channel is
+ * closed and all messages have been read. Messages are received in pull mode, so the channel must not have {@link DataChannel#onMessage}
+ * listeners.
+ * </p>
+ * <p>
+ * Heap buffers are staged through reusable direct buffers, direct buffers are sent without copying. Closing this view does not close the
+ * data channel.
+ * </p>
+ */
+public class DataChannelByteChannel implements ByteChannel {
+    public static final int DEFAULT_HIGH_WATERMARK = 1024 * 1024;
+    public static final int DEFAULT_LOW_WATERMARK = 256 * 1024;
+    private static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+    private static final int READ_BATCH_SIZE = 16;
+
+    private final DataChannel channel;
+    private final BlockingSender sender;
+    private final ChannelSignal readable;
+    private final Lock readLock;
+    private final int[] lengths;
+    private final DataChannelCallback.Available onAvailable;
+    private final DataChannelCallback.Closed onClosed;
+    private ByteBuffer readBuffer;
+    private volatile boolean channelClosed;
+    private volatile boolean open;
+
+    /**
+     * Creates a view of the channel.
+     *
+     * @param channel       the channel
+     * @param lowWatermark  the buffered amount at which blocked writes continue
+     * @param highWatermark the buffered amount at which writes block, must be greater than the low watermark
+     */
+    public DataChannelByteChannel(DataChannel channel, int lowWatermark, int highWatermark) {
+        this.channel = channel;
+        this.sender = new BlockingSender(channel, lowWatermark, highWatermark);
+        this.readable = new ChannelSignal();
+        this.readLock = new ReentrantLock();
+        this.lengths = new int[READ_BATCH_SIZE];
+        this.onAvailable = c -> readable.signal();
+        this.onClosed = c -> {
+            channelClosed = true;
+            readable.signal();
+        };
+        this.readBuffer = ByteBuffer.allocateDirect(INITIAL_READ_BUFFER_SIZE);
+        this.readBuffer.limit(0);
+        this.channelClosed = false;
+        this.open = true;
+
+        channel.onAvailable.register(onAvailable);
+        channel.onClosed.register(onClosed);
+    }
+
+    /**
+     * Creates a view of the channel with watermarks of {@value #DEFAULT_LOW_WATERMARK} and {@value #DEFAULT_HIGH_WATERMARK} bytes.
+     *
+     * @param channel the channel
+     */
+    public DataChannelByteChannel(DataChannel channel) {
+        this(channel, DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK);
+    }
+
+    /**
+     * Returns an {@link InputStream} reading from this view.
+     *
+     * @return the stream
+     */
+    public InputStream inputStream() {
+        return Channels.newInputStream(this);
+    }
+
+    /**
+     * Returns an {@link OutputStream} writing to this view. Writes are buffered up to the maximum message size, so small writes are combined
+     * into full messages. The channel must be open.
+     *
+     * @return the stream
+     */
+    public OutputStream outputStream() {
+        return new BufferedOutputStream(Channels.newOutputStream(this), sender.messageSize());
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private static void await(ChannelSignal signal, long generation) throws InterruptedIOException {
+        try {
+            signal.await(generation, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting on the data channel");
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        readLock.lock();
+        try {
+            ensureOpen();
+            if (!dst.hasRemaining()) {
+                return 0;
+            }
+            while (!readBuffer.hasRemaining()) {
+                final long generation = readable.generation();
+                if (fill()) {
+                    break;
+                }
+                if (channelClosed) {
+                    return -1;
+                }
+                await(readable, generation);
+                ensureOpen();
+            }
+            final int length = Math.min(dst.remaining(), readBuffer.remaining());
+            final int limit = readBuffer.limit();
+            readBuffer.limit(readBuffer.position() + length);
+            dst.put(readBuffer);
+            readBuffer.limit(limit);
+            return length;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private boolean fill() {
+        while (true) {
+            readBuffer.clear();
+            final int count;
+            try {
+                count = channel.receiveBatch(readBuffer, lengths);
+            } catch (RuntimeException e) {
+                readBuffer.limit(0);
+                if (channelClosed) {
+                    return false;
+                }
+                throw e;
+            }
+            if (count < 0) {
+                readBuffer = ByteBuffer.allocateDirect(Integer.highestOneBit(-count) << 1);
+                continue;
+            }
+            readBuffer.flip();
+            return count > 0;
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        ensureOpen();
+        return sender.write(src);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Closes this view and wakes up blocked readers and writers. The data channel stays open.
+     */
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        channel.onAvailable.deregister(onAvailable);
+        channel.onClosed.deregister(onClosed);
+        sender.close();
+        readable.signal();
+    }
+}
@@ -36,7 +36,15 @@ public interface DataChannelCallback {
      * While set, messages can't be received with {@link DataChannel#receiveMessage()}.
      * </p>
      */
-    interface Message extends TextMessage, BinaryMessage {
+    interface Message extends TextMessage, Utf8TextMessage, BinaryMessage {
+        /**
+         * Decodes the text and passes it to {@link #onText(DataChannel, String)}. Override this to consume the raw UTF-8 bytes instead.
+         */
+        @Override
+        default void onUtf8Text(DataChannel channel, ByteBuffer text) {
+            onText(channel, Util.decodeUtf8(text));
+        }
+
         static Message handleText(TextMessage handler) {
             return new DataChannelCallback.Message() {
                 @Override
@@ -50,6 +58,23 @@ public interface DataChannelCallback {
             };
         }
 
+        static Message handleUtf8Text(Utf8TextMessage handler) {
+            return new DataChannelCallback.Message() {
+                @Override
+                public void onText(DataChannel channel, String text) {
+                }
+
+                @Override
+                public void onUtf8Text(DataChannel channel, ByteBuffer text) {
+                    handler.onUtf8Text(channel, text);
+                }
+
+                @Override
+                public void onBinary(DataChannel channel, ByteBuffer buffer) {
+                }
+            };
+        }
+
         static Message handleBinary(BinaryMessage handler) {
             return new DataChannelCallback.Message() {
                 @Override
@@ -76,11 +101,30 @@ public interface DataChannelCallback {
         void onText(DataChannel channel, String text);
     }
 
+    /**
+     * Called when the channel receives a text message, with the raw UTF-8 bytes of the text (without null terminator).
+     * <p>
+     * While set, messages can't be received with {@link DataChannel#receiveMessage()}.
+     * </p>
+     * <p>
+     * The buffer must not be used after the handler returned. Like for {@link BinaryMessage}, it refers to native memory with
+     * {@link PeerConnection#INLINE_EXECUTOR} and to a copy with other executors.
+     * </p>
+     */
+    @FunctionalInterface
+    interface Utf8TextMessage {
+        void onUtf8Text(DataChannel channel, ByteBuffer text);
+    }
+
     /**
      * Called when the channel receives a message.
      * <p>
      * While set, messages can't be received with {@link DataChannel#receiveMessage()}.
      * </p>
+     * <p>
+     * The buffer must not be used after the handler returned. With {@link PeerConnection#INLINE_EXECUTOR} it refers to native memory that is
+     * only valid while the native callback runs, other executors receive a copy, taken from the {@link MessageBufferPool} if one is configured.
+     * </p>
      */
     @FunctionalInterface
     interface BinaryMessage {
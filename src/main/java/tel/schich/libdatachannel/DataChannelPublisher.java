@@ -0,0 +1,181 @@
+package tel.schich.libdatachannel;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Flow.Publisher} of the messages received by a {@link DataChannel}.
+ * <p>
+ * Messages are pulled from libdatachannel only while the subscriber has outstanding demand, using {@link DataChannel#onAvailable} to learn
+ * about new messages. Messages that are not requested stay buffered in libdatachannel, so the channel must not have {@link DataChannel#onMessage}
+ * listeners. Text messages are published as their UTF-8 bytes.
+ * </p>
+ * <p>
+ * Each message is published as a new heap buffer that the subscriber owns. The publisher completes when the channel is closed and all
+ * requested messages have been delivered, and fails when the channel reports an error. It supports a single subscriber.
+ * </p>
+ */
+public class DataChannelPublisher implements Flow.Publisher<ByteBuffer> {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final DataChannel channel;
+    private final AtomicBoolean subscribed;
+
+    public DataChannelPublisher(DataChannel channel) {
+        this.channel = channel;
+        this.subscribed = new AtomicBoolean(false);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("The publisher of channel " + channel.label() + " is already subscribed!"));
+            return;
+        }
+        final ChannelSubscription subscription = new ChannelSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+
+    private final class ChannelSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand;
+        private final AtomicInteger wip;
+        private final int[] lengths;
+        private final DataChannelCallback.Available onAvailable;
+        private final DataChannelCallback.Closed onClosed;
+        private final DataChannelCallback.Error onError;
+        private ByteBuffer buffer;
+        private volatile boolean channelClosed;
+        private volatile Throwable error;
+        private volatile boolean terminated;
+
+        ChannelSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+            this.demand = new AtomicLong();
+            this.wip = new AtomicInteger();
+            this.lengths = new int[1];
+            this.onAvailable = c -> drain();
+            this.onClosed = c -> {
+                channelClosed = true;
+                drain();
+            };
+            this.onError = (c, message) -> {
+                error = new IllegalStateException("Channel " + c.label() + " failed: " + message);
+                drain();
+            };
+            this.buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+            this.channelClosed = false;
+            this.error = null;
+            this.terminated = false;
+        }
+
+        void start() {
+            channel.onAvailable.register(onAvailable);
+            channel.onClosed.register(onClosed);
+            channel.onError.register(onError);
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " messages, the demand must be positive!");
+            } else {
+                demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (!terminated) {
+                terminated = true;
+                deregister();
+            }
+        }
+
+        private void deregister() {
+            channel.onAvailable.deregister(onAvailable);
+            channel.onClosed.deregister(onClosed);
+            channel.onError.deregister(onError);
+        }
+
+        private void terminate(Throwable t) {
+            terminated = true;
+            deregister();
+            if (t == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(t);
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!terminated) {
+                    if (error != null) {
+                        terminate(error);
+                        break;
+                    }
+                    if (demand.get() == 0) {
+                        break;
+                    }
+                    final ByteBuffer message;
+                    try {
+                        message = receive();
+                    } catch (RuntimeException e) {
+                        // a closed channel may already be gone natively
+                        terminate(channelClosed ? null : e);
+                        break;
+                    }
+                    if (message == null) {
+                        if (channelClosed) {
+                            terminate(null);
+                        }
+                        break;
+                    }
+                    demand.decrementAndGet();
+                    subscriber.onNext(message);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private ByteBuffer receive() {
+            while (true) {
+                buffer.clear();
+                final int count = channel.receiveBatch(buffer, lengths);
+                if (count == 0) {
+                    return null;
+                }
+                if (count < 0) {
+                    buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(-count) << 1);
+                    continue;
+                }
+                buffer.flip();
+                final ByteBuffer message = ByteBuffer.allocate(buffer.remaining());
+                message.put(buffer).flip();
+                return message;
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package tel.schich.libdatachannel;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multiplexes the readiness of many {@link DataChannel}s onto a few selecting threads, similar to {@link java.nio.channels.Selector}.
+ * <p>
+ * A channel becomes readable when {@link DataChannel#onAvailable} fires and writable when {@link DataChannel#onBufferedAmountLow} fires.
+ * Readiness is edge-triggered: a ready channel is reported once, after which it has to be drained (e.g. with
+ * {@link DataChannel#receiveBatch(java.nio.ByteBuffer, int[])} until no message is left) or written until the buffered amount is high again
+ * before it is reported again. Channels are reported as writable and, if messages are pending, readable right after registration.
+ * </p>
+ * <p>
+ * Ready keys are collected in a queue and selecting threads are only woken if they are actually waiting. To avoid an executor task per
+ * event, the channels' peer connections should dispatch on an executor that runs listeners inline.
+ * </p>
+ */
+public class DataChannelSelector implements Closeable {
+    public static final int OP_READ = 1;
+    public static final int OP_WRITE = 2;
+
+    private final Queue<Key> readyKeys;
+    private final ConcurrentHashMap<DataChannel, Key> keys;
+    private final ChannelSignal signal;
+    private final AtomicInteger waiting;
+    private volatile boolean woken;
+    private volatile boolean closed;
+
+    /**
+     * Receives the ready keys from {@link #select(Handler)}.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * Called for a ready key.
+         *
+         * @param key      the key
+         * @param readyOps the operations the channel became ready for since it was last reported, a combination of {@link #OP_READ} and
+         *                 {@link #OP_WRITE}
+         */
+        void onReady(Key key, int readyOps);
+    }
+
+    public DataChannelSelector() {
+        this.readyKeys = new ConcurrentLinkedQueue<>();
+        this.keys = new ConcurrentHashMap<>();
+        this.signal = new ChannelSignal();
+        this.waiting = new AtomicInteger();
+        this.woken = false;
+        this.closed = false;
+    }
+
+    /**
+     * Registers a channel with this selector. A channel can only be registered once per selector.
+     *
+     * @param channel     the channel
+     * @param interestOps the operations to report, a combination of {@link #OP_READ} and {@link #OP_WRITE}
+     * @param attachment  an arbitrary object to attach to the key
+     * @return the key
+     */
+    public Key register(DataChannel channel, int interestOps, @Nullable Object attachment) {
+        if (closed) {
+            throw new IllegalStateException("The selector is already closed!");
+        }
+        final Key key = new Key(channel, interestOps, attachment);
+        if (keys.putIfAbsent(channel, key) != null) {
+            throw new IllegalStateException("The channel is already registered!");
+        }
+        channel.onAvailable.register(key.onAvailable);
+        channel.onBufferedAmountLow.register(key.onBufferedAmountLow);
+        key.ready(OP_WRITE);
+        if (channel.availableAmount() > 0) {
+            key.ready(OP_READ);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the key of a registered channel.
+     *
+     * @param channel the channel
+     * @return the key or null if the channel is not registered
+     */
+    public @Nullable Key keyFor(DataChannel channel) {
+        return keys.get(channel);
+    }
+
+    /**
+     * Passes the ready keys to the handler without waiting.
+     *
+     * @param handler the handler
+     * @return the number of keys handled
+     */
+    public int selectNow(Handler handler) {
+        int count = 0;
+        Key key;
+        while ((key = readyKeys.poll()) != null) {
+            final int ops = key.readyOps.getAndSet(0) & key.interestOps;
+            if (ops != 0 && key.valid) {
+                handler.onReady(key, ops);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Waits until at least one key is ready, {@link #wakeup()} is called or the selector is closed, and passes the ready keys to the handler.
+     * Multiple threads can select concurrently, each key is passed to only one of them.
+     *
+     * @param handler the handler
+     * @return the number of keys handled
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public int select(Handler handler) throws InterruptedException {
+        return select(handler, -1);
+    }
+
+    /**
+     * Like {@link #select(Handler)}, but waits at most the given timeout.
+     *
+     * @param handler the handler
+     * @param timeout the maximum time to wait
+     * @return the number of keys handled
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public int select(Handler handler, Duration timeout) throws InterruptedException {
+        return select(handler, Math.max(0, timeout.toNanos()));
+    }
+
+    private int select(Handler handler, long timeoutNanos) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeoutNanos;
+        while (true) {
+            final int count = selectNow(handler);
+            if (count > 0 || closed) {
+                return count;
+            }
+            waiting.incrementAndGet();
+            try {
+                final long generation = signal.generation();
+                if (!readyKeys.isEmpty() || closed) {
+                    continue;
+                }
+                if (woken) {
+                    woken = false;
+                    return 0;
+                }
+                final long remaining = timeoutNanos < 0 ? -1 : deadline - System.nanoTime();
+                if (timeoutNanos >= 0 && remaining <= 0) {
+                    return 0;
+                }
+                signal.await(generation, remaining);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Causes a thread blocked in {@link #select(Handler)} to return, or the next select call if no thread is currently blocked.
+     */
+    public void wakeup() {
+        woken = true;
+        signal.signal();
+    }
+
+    private void signalReady(Key key) {
+        readyKeys.add(key);
+        if (waiting.get() > 0) {
+            signal.signal();
+        }
+    }
+
+    /**
+     * Cancels all keys and wakes up blocked threads.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Key key : keys.values()) {
+            key.cancel();
+        }
+        readyKeys.clear();
+        signal.signal();
+    }
+
+    /**
+     * The registration of a {@link DataChannel} with a {@link DataChannelSelector}.
+     */
+    public final class Key {
+        private final DataChannel channel;
+        @Nullable
+        private final Object attachment;
+        private final AtomicInteger readyOps;
+        private final DataChannelCallback.Available onAvailable;
+        private final DataChannelCallback.BufferedAmountLow onBufferedAmountLow;
+        private volatile int interestOps;
+        private volatile boolean valid;
+
+        private Key(DataChannel channel, int interestOps, @Nullable Object attachment) {
+            this.channel = channel;
+            this.attachment = attachment;
+            this.readyOps = new AtomicInteger();
+            this.onAvailable = c -> ready(OP_READ);
+            this.onBufferedAmountLow = c -> ready(OP_WRITE);
+            this.interestOps = interestOps;
+            this.valid = true;
+        }
+
+        private void ready(int op) {
+            if (!valid || (interestOps & op) == 0) {
+                return;
+            }
+            if (readyOps.getAndUpdate(ops -> ops | op) == 0) {
+                signalReady(this);
+            }
+        }
+
+        public DataChannel channel() {
+            return channel;
+        }
+
+        public @Nullable Object attachment() {
+            return attachment;
+        }
+
+        public DataChannelSelector selector() {
+            return DataChannelSelector.this;
+        }
+
+        public int interestOps() {
+            return interestOps;
+        }
+
+        /**
+         * Changes the interest set. Readiness that occurred while an operation was not of interest is not reported later.
+         *
+         * @param ops a combination of {@link #OP_READ} and {@link #OP_WRITE}
+         */
+        public void interestOps(int ops) {
+            this.interestOps = ops;
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        /**
+         * Deregisters the channel from the selector.
+         */
+        public void cancel() {
+            if (!valid) {
+                return;
+            }
+            valid = false;
+            keys.remove(channel, this);
+            channel.onAvailable.deregister(onAvailable);
+            channel.onBufferedAmountLow.deregister(onBufferedAmountLow);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package tel.schich.libdatachannel;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link Flow.Subscriber} that sends each received buffer as a binary message in a {@link DataChannel}.
+ * <p>
+ * Only one message is requested at a time, and no further message is requested while the channel's buffered amount is at or above the high
+ * watermark. Requesting resumes once the buffered amount dropped to the low watermark, which is requested as the channel's buffered amount
+ * low threshold. Heap buffers are copied into a reusable direct buffer before being sent.
+ * </p>
+ * <p>
+ * The channel is not closed when the subscription terminates, see {@link #completion()}.
+ * </p>
+ */
+public class DataChannelSubscriber implements Flow.Subscriber<ByteBuffer> {
+    public static final int DEFAULT_HIGH_WATERMARK = 1024 * 1024;
+    public static final int DEFAULT_LOW_WATERMARK = 256 * 1024;
+
+    private final DataChannel channel;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final CompletableFuture<Void> completion;
+    private final AtomicBoolean awaitingLow;
+    private final DataChannelCallback.BufferedAmountLow onBufferedAmountLow;
+    private ByteBuffer directBuffer;
+    private volatile Flow.Subscription subscription;
+
+    /**
+     * Creates a subscriber.
+     *
+     * @param channel       the channel to send to
+     * @param lowWatermark  the buffered amount at which messages are requested again
+     * @param highWatermark the buffered amount at which no further messages are requested, must be greater than the low watermark
+     */
+    public DataChannelSubscriber(DataChannel channel, int lowWatermark, int highWatermark) {
+        if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+            throw new IllegalArgumentException("The high watermark must be greater than the low watermark!");
+        }
+        this.channel = channel;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.completion = new CompletableFuture<>();
+        this.awaitingLow = new AtomicBoolean(false);
+        this.onBufferedAmountLow = c -> {
+            if (awaitingLow.compareAndSet(true, false)) {
+                requestNext();
+            }
+        };
+        this.directBuffer = null;
+    }
+
+    /**
+     * Creates a subscriber with watermarks of {@value #DEFAULT_LOW_WATERMARK} and {@value #DEFAULT_HIGH_WATERMARK} bytes.
+     *
+     * @param channel the channel to send to
+     */
+    public DataChannelSubscriber(DataChannel channel) {
+        this(channel, DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK);
+    }
+
+    /**
+     * Returns a future that completes when the publisher completed, or fails when the publisher or sending failed.
+     *
+     * @return the completion
+     */
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        channel.requestBufferedAmountLowThreshold(lowWatermark);
+        channel.onBufferedAmountLow.register(onBufferedAmountLow);
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        try {
+            channel.sendMessage(direct(item));
+            if (channel.bufferedAmount() < highWatermark) {
+                requestNext();
+                return;
+            }
+            awaitingLow.set(true);
+            // the callback only fires on a transition, so check again in case it fired before the flag was set
+            if (channel.bufferedAmount() < highWatermark && awaitingLow.compareAndSet(true, false)) {
+                requestNext();
+            }
+        } catch (RuntimeException e) {
+            subscription.cancel();
+            terminate(e);
+        }
+    }
+
+    private void requestNext() {
+        subscription.request(1);
+    }
+
+    private ByteBuffer direct(ByteBuffer item) {
+        if (item.isDirect()) {
+            return item;
+        }
+        final int length = item.remaining();
+        if (directBuffer == null || directBuffer.capacity() < length) {
+            directBuffer = ByteBuffer.allocateDirect(Math.max(length, Integer.highestOneBit(Math.max(length - 1, 1)) << 1));
+        }
+        directBuffer.clear();
+        directBuffer.put(item.duplicate()).flip();
+        return directBuffer;
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        terminate(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        terminate(null);
+    }
+
+    private void terminate(Throwable t) {
+        if (completion.isDone()) {
+            // a failed send already terminated the subscription
+            return;
+        }
+        channel.onBufferedAmountLow.deregister(onBufferedAmountLow);
+        channel.releaseBufferedAmountLowThreshold(lowWatermark);
+        if (t == null) {
+            completion.complete(null);
+        } else {
+            completion.completeExceptionally(t);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package tel.schich.libdatachannel;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.libdatachannel.PeerConnectionConfiguration.OverloadPolicy;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the number of events of a peer connection that are pending on their executors, see
+ * {@link PeerConnectionConfiguration#withDispatchQueue(int, OverloadPolicy)}.
+ * <p>
+ * Each event is submitted to its executor right away, wrapped in an entry that is tracked here until it starts running. Dropping or coalescing
+ * an event clears the task of its entry, so the executor only runs an empty entry. Only message events are ever dropped, and the completion of
+ * a dropped event runs in its place, so pooled buffers are released.
+ * </p>
+ * <p>
+ * Events that are not dropped never wait indefinitely, as the submitting thread is usually one of libdatachannel's threads serving other
+ * peers as well. They wait at most {@value #BLOCK_TIMEOUT_MILLIS} ms with {@link OverloadPolicy#BLOCK} and {@link OverloadPolicy#COALESCE},
+ * not at all with the drop policies or when submitted from a thread running an event of the same queue, and are queued beyond the capacity
+ * afterwards.
+ * </p>
+ */
+final class DispatchQueue {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchQueue.class);
+    /**
+     * The longest time a native callback waits for room in the queue with {@link OverloadPolicy#BLOCK}.
+     */
+    static final long BLOCK_TIMEOUT_MILLIS = 100;
+    private static final long BLOCK_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(BLOCK_TIMEOUT_MILLIS);
+    // the queue whose event the current thread is running, it must never wait for that queue
+    private static final ThreadLocal<DispatchQueue> DRAINING = new ThreadLocal<>();
+
+    private final int capacity;
+    private final OverloadPolicy policy;
+    private final Lock lock;
+    private final Condition notFull;
+    private final ArrayDeque<Entry> pending;
+    private final Map<Object, Entry> pendingByKey;
+    private final LongAdder dropped;
+    private final LongAdder coalesced;
+    private final LongAdder overflowed;
+
+    DispatchQueue(int capacity, OverloadPolicy policy) {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.lock = new ReentrantLock();
+        this.notFull = lock.newCondition();
+        this.pending = new ArrayDeque<>();
+        this.pendingByKey = new HashMap<>();
+        this.dropped = new LongAdder();
+        this.coalesced = new LongAdder();
+        this.overflowed = new LongAdder();
+    }
+
+    /**
+     * How the events of an {@link EventListenerContainer} may be treated when the queue is full.
+     */
+    enum Delivery {
+        /**
+         * The event is always delivered, if necessary beyond the capacity of the queue.
+         */
+        GUARANTEED,
+        /**
+         * The event may replace a pending event of the same container with {@link OverloadPolicy#COALESCE}, it is delivered like
+         * {@link #GUARANTEED} otherwise.
+         */
+        COALESCING,
+        /**
+         * The event may be dropped with {@link OverloadPolicy#DROP_NEWEST} and {@link OverloadPolicy#DROP_OLDEST}, it is delivered like
+         * {@link #GUARANTEED} otherwise.
+         */
+        DROPPABLE,
+    }
+
+    /**
+     * Submits a task to the executor.
+     *
+     * @param executor   the executor to run the task on
+     * @param key        the key to coalesce pending tasks by, used with {@link Delivery#COALESCING}
+     * @param delivery   how the task may be treated when the queue is full
+     * @param task       the task
+     * @param completion run instead of the task if it is dropped, so resources held for it can be released
+     */
+    void execute(Executor executor, Object key, Delivery delivery, Runnable task, @Nullable Runnable completion) {
+        final Entry entry;
+        Runnable droppedCompletion = null;
+        final boolean mayWait = policy == OverloadPolicy.BLOCK || policy == OverloadPolicy.COALESCE;
+        long remaining = BLOCK_TIMEOUT_NANOS;
+        lock.lock();
+        try {
+            if (policy == OverloadPolicy.COALESCE && delivery == Delivery.COALESCING) {
+                final Entry existing = pendingByKey.get(key);
+                if (existing != null) {
+                    existing.task = task;
+                    coalesced.increment();
+                    return;
+                }
+            }
+            while (pending.size() >= capacity) {
+                if (policy == OverloadPolicy.DROP_NEWEST && delivery == Delivery.DROPPABLE) {
+                    dropped.increment();
+                    droppedCompletion = completion;
+                    return;
+                }
+                if (policy == OverloadPolicy.DROP_OLDEST && delivery == Delivery.DROPPABLE) {
+                    final Entry oldest = pollOldestDroppable();
+                    dropped.increment();
+                    if (oldest == null) {
+                        // only events that must be delivered are pending, so this is the oldest droppable one
+                        droppedCompletion = completion;
+                        return;
+                    }
+                    oldest.task = null;
+                    droppedCompletion = oldest.completion;
+                    continue;
+                }
+                if (!mayWait || remaining <= 0 || DRAINING.get() == this) {
+                    // parking here could deadlock or stall libdatachannel, so the event is queued beyond the capacity
+                    overflowed.increment();
+                    break;
+                }
+                try {
+                    remaining = notFull.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    remaining = 0;
+                }
+            }
+            entry = new Entry(delivery == Delivery.COALESCING ? key : null, delivery == Delivery.DROPPABLE, task, completion);
+            pending.add(entry);
+            if (policy == OverloadPolicy.COALESCE && delivery == Delivery.COALESCING) {
+                pendingByKey.put(key, entry);
+            }
+        } finally {
+            lock.unlock();
+            if (droppedCompletion != null) {
+                runCompletion(droppedCompletion);
+            }
+        }
+        executor.execute(entry);
+    }
+
+    @Nullable
+    private Entry pollOldestDroppable() {
+        final Iterator<Entry> it = pending.iterator();
+        while (it.hasNext()) {
+            final Entry entry = it.next();
+            if (entry.droppable) {
+                it.remove();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static void runCompletion(Runnable completion) {
+        try {
+            completion.run();
+        } catch (Throwable t) {
+            LOGGER.error("Completion of a dropped event failed!", t);
+        }
+    }
+
+    long droppedEvents() {
+        return dropped.sum();
+    }
+
+    long coalescedEvents() {
+        return coalesced.sum();
+    }
+
+    long overflowedEvents() {
+        return overflowed.sum();
+    }
+
+    private final class Entry implements Runnable {
+        @Nullable
+        private final Object key;
+        private final boolean droppable;
+        @Nullable
+        private Runnable task;
+        @Nullable
+        private final Runnable completion;
+
+        Entry(@Nullable Object key, boolean droppable, Runnable task, @Nullable Runnable completion) {
+            this.key = key;
+            this.droppable = droppable;
+            this.task = task;
+            this.completion = completion;
+        }
+
+        @Override
+        public void run() {
+            final Runnable current;
+            lock.lock();
+            try {
+                current = task;
+                if (current == null) {
+                    // dropped, it is no longer pending
+                    return;
+                }
+                task = null;
+                // entries usually start in submission order, so this is typically the head
+                pending.removeFirstOccurrence(this);
+                if (key != null) {
+                    pendingByKey.remove(key, this);
+                }
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+            final DispatchQueue previous = DRAINING.get();
+            DRAINING.set(DispatchQueue.this);
+            try {
+                current.run();
+            } finally {
+                DRAINING.set(previous);
+            }
+        }
+    }
+}
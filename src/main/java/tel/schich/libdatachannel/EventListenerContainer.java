@@ -1,11 +1,11 @@
 package tel.schich.libdatachannel;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
 import java.util.concurrent.Executor;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -13,20 +13,35 @@ import java.util.function.Consumer;
 
 public class EventListenerContainer<T> implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(EventListenerContainer.class);
+    private static final Object[] EMPTY = new Object[0];
 
     private final String eventName;
     private final Consumer<Boolean> lifecycleCallback;
-    private final List<T> listeners;
+    // copy-on-write snapshot of the listeners, iterated without allocating on every event
+    private volatile Object[] listeners;
     private final Lock changeLock;
     private final Executor executor;
+    @Nullable
+    private final DispatchQueue dispatchQueue;
+    private final DispatchQueue.Delivery delivery;
     private volatile boolean closed;
 
     public EventListenerContainer(String eventName, Consumer<Boolean> lifecycleCallback, Executor executor) {
+        this(eventName, lifecycleCallback, executor, null, DispatchQueue.Delivery.GUARANTEED);
+    }
+
+    /**
+     * @param dispatchQueue the queue bounding the pending events of the peer connection, if any
+     * @param delivery      whether pending events of this container may be replaced by newer ones or dropped when the queue is full
+     */
+    EventListenerContainer(String eventName, Consumer<Boolean> lifecycleCallback, Executor executor, @Nullable DispatchQueue dispatchQueue, DispatchQueue.Delivery delivery) {
         this.eventName = eventName;
         this.lifecycleCallback = lifecycleCallback;
-        this.listeners = new CopyOnWriteArrayList<>();
+        this.listeners = EMPTY;
         this.changeLock = new ReentrantLock();
         this.executor = executor;
+        this.dispatchQueue = executor == PeerConnection.INLINE_EXECUTOR ? null : dispatchQueue;
+        this.delivery = delivery;
         this.closed = false;
     }
 
@@ -34,20 +49,176 @@ public class EventListenerContainer<T> implements Closeable {
         return eventName;
     }
 
+    /**
+     * Invokes a listener with one argument, see {@link #invoke(Invoker, Object)}.
+     */
+    @FunctionalInterface
+    interface Invoker<T, A> {
+        void invoke(T listener, A argument);
+    }
+
+    /**
+     * Invokes a listener with two arguments, see {@link #invoke(Invoker2, Object, Object)}.
+     */
+    @FunctionalInterface
+    interface Invoker2<T, A, B> {
+        void invoke(T listener, A first, B second);
+    }
+
+    /**
+     * Returns whether listeners run on the thread that invokes them, so arguments only need to be valid until the invoke call returns.
+     */
+    boolean isInline() {
+        return executor == PeerConnection.INLINE_EXECUTOR;
+    }
+
+    private boolean isClosed() {
+        if (closed) {
+            LOGGER.warn("Invoke attempted on closed container for event {}", eventName);
+            return true;
+        }
+        return false;
+    }
+
     void invoke(Consumer<T> invoker) {
+        if (isClosed()) {
+            return;
+        }
+        if (executor == PeerConnection.INLINE_EXECUTOR) {
+            invokeListeners(invoker);
+            return;
+        }
+        submit(() -> invokeListeners(invoker));
+    }
+
+    /**
+     * Invokes all listeners with an argument. With the inline executor nothing is allocated if the invoker does not capture anything, e.g. a
+     * method reference like {@code DataChannelCallback.Open::onOpen}. Any other executor needs a task capturing the invoker and the argument,
+     * which is allocated per event.
+     */
+    <A> void invoke(Invoker<T, A> invoker, A argument) {
+        if (isClosed()) {
+            return;
+        }
+        if (executor == PeerConnection.INLINE_EXECUTOR) {
+            invokeListeners(invoker, argument);
+            return;
+        }
+        submit(() -> invokeListeners(invoker, argument));
+    }
+
+    /**
+     * Invokes all listeners with two arguments, like {@link #invoke(Invoker, Object)}.
+     */
+    <A, B> void invoke(Invoker2<T, A, B> invoker, A first, B second) {
+        if (isClosed()) {
+            return;
+        }
+        if (executor == PeerConnection.INLINE_EXECUTOR) {
+            invokeListeners(invoker, first, second);
+            return;
+        }
+        submit(() -> invokeListeners(invoker, first, second));
+    }
+
+    /**
+     * Invokes all listeners with two arguments and runs the completion once all of them returned, even if the container is closed.
+     */
+    <A, B> void invoke(Invoker2<T, A, B> invoker, A first, B second, Runnable completion) {
         if (closed) {
             LOGGER.warn("Invoke attempted on closed container for event {}", eventName);
+            completion.run();
             return;
         }
-        executor.execute(() -> {
-            for (T listener : this.listeners) {
-                try {
-                    invoker.accept(listener);
-                } catch (Throwable t) {
-                    LOGGER.error("Handler for event {} failed!", eventName, t);
-                }
+        if (executor == PeerConnection.INLINE_EXECUTOR) {
+            try {
+                invokeListeners(invoker, first, second);
+            } finally {
+                completion.run();
+            }
+            return;
+        }
+        submit(() -> {
+            try {
+                invokeListeners(invoker, first, second);
+            } finally {
+                completion.run();
             }
-        });
+        }, completion);
+    }
+
+    /**
+     * Creates a reusable task that invokes all listeners with a fixed argument, to be passed to {@link #dispatch(Runnable)}. This avoids
+     * allocating a task per event for events without payload.
+     */
+    <A> Runnable dispatcher(Invoker<T, A> invoker, A argument) {
+        return () -> invokeListeners(invoker, argument);
+    }
+
+    /**
+     * Runs a task created by {@link #dispatcher(Invoker, Object)} on the executor. Unlike the invoke methods, this does not allocate with any
+     * executor unless a dispatch queue is configured, which tracks an entry per event.
+     */
+    void dispatch(Runnable dispatcher) {
+        if (isClosed()) {
+            return;
+        }
+        if (executor == PeerConnection.INLINE_EXECUTOR) {
+            dispatcher.run();
+            return;
+        }
+        submit(dispatcher);
+    }
+
+    private void submit(Runnable task) {
+        submit(task, null);
+    }
+
+    /**
+     * @param completion run instead of the task if the dispatch queue drops it
+     */
+    private void submit(Runnable task, @Nullable Runnable completion) {
+        if (dispatchQueue == null) {
+            executor.execute(task);
+        } else {
+            dispatchQueue.execute(executor, this, delivery, task, completion);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void invokeListeners(Consumer<T> invoker) {
+        final Object[] snapshot = this.listeners;
+        for (Object listener : snapshot) {
+            try {
+                invoker.accept((T) listener);
+            } catch (Throwable t) {
+                LOGGER.error("Handler for event {} failed!", eventName, t);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <A> void invokeListeners(Invoker<T, A> invoker, A argument) {
+        final Object[] snapshot = this.listeners;
+        for (Object listener : snapshot) {
+            try {
+                invoker.invoke((T) listener, argument);
+            } catch (Throwable t) {
+                LOGGER.error("Handler for event {} failed!", eventName, t);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <A, B> void invokeListeners(Invoker2<T, A, B> invoker, A first, B second) {
+        final Object[] snapshot = this.listeners;
+        for (Object listener : snapshot) {
+            try {
+                invoker.invoke((T) listener, first, second);
+            } catch (Throwable t) {
+                LOGGER.error("Handler for event {} failed!", eventName, t);
+            }
+        }
     }
 
     public void register(T listener) {
@@ -57,8 +228,11 @@ public class EventListenerContainer<T> implements Closeable {
             if (closed) {
                 throw new IllegalStateException("Container for event " + eventName + " is already closed!");
             }
-            wasEmpty = listeners.isEmpty();
-            listeners.add(listener);
+            final Object[] current = listeners;
+            wasEmpty = current.length == 0;
+            final Object[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = listener;
+            listeners = updated;
         } finally {
             changeLock.unlock();
         }
@@ -71,10 +245,22 @@ public class EventListenerContainer<T> implements Closeable {
         boolean isNowEmpty;
         changeLock.lock();
         try {
-            if (!listeners.remove(listener)) {
+            final Object[] current = listeners;
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].equals(listener)) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index == -1) {
                 return false;
             }
-            isNowEmpty = listeners.isEmpty();
+            final Object[] updated = new Object[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, updated.length - index);
+            listeners = updated;
+            isNowEmpty = updated.length == 0;
         } finally {
             changeLock.unlock();
         }
@@ -90,8 +276,8 @@ public class EventListenerContainer<T> implements Closeable {
             if (closed) {
                 return false;
             }
-            boolean triggerLifecycleCallback = !listeners.isEmpty();
-            listeners.clear();
+            boolean triggerLifecycleCallback = listeners.length != 0;
+            listeners = EMPTY;
             return triggerLifecycleCallback;
         } finally {
             changeLock.unlock();
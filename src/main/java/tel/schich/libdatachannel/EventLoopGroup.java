@@ -0,0 +1,118 @@
+package tel.schich.libdatachannel;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed group of single-threaded event loops that peer connections are pinned to, see
+ * {@link PeerConnection#createPeer(PeerConnectionConfiguration, EventLoopGroup)}.
+ * <p>
+ * All callbacks of a peer connection and its channels run on the same loop, so state owned by a peer can be handled without locks. Additional
+ * work can be scheduled on that loop through {@link PeerConnection#eventLoop()}.
+ * </p>
+ */
+public class EventLoopGroup implements Closeable {
+    private final ScheduledExecutorService[] loops;
+    private final AtomicInteger nextLoop;
+
+    /**
+     * Creates a group of event loops.
+     *
+     * @param size          the number of loops
+     * @param threadFactory the factory for the loop threads
+     */
+    public EventLoopGroup(int size, ThreadFactory threadFactory) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive!");
+        }
+        this.loops = new ScheduledExecutorService[size];
+        for (int i = 0; i < size; i++) {
+            loops[i] = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        }
+        this.nextLoop = new AtomicInteger();
+    }
+
+    /**
+     * Creates a group with one loop per available processor, running on daemon threads.
+     *
+     * @return the group
+     */
+    public static EventLoopGroup create() {
+        return create(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a group of event loops running on daemon threads.
+     *
+     * @param size the number of loops
+     * @return the group
+     */
+    public static EventLoopGroup create(int size) {
+        final AtomicInteger counter = new AtomicInteger();
+        return new EventLoopGroup(size, r -> {
+            final Thread thread = new Thread(r, "libdatachannel-event-loop-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the number of loops.
+     *
+     * @return the size
+     */
+    public int size() {
+        return loops.length;
+    }
+
+    /**
+     * Returns the loop to pin the next peer connection to. Loops are assigned round-robin, as the handles of peer connections are not
+     * consecutive, channels and tracks are numbered from the same counter.
+     *
+     * @return the loop
+     */
+    ScheduledExecutorService nextLoop() {
+        return loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+    }
+
+    /**
+     * Shuts down all loops, previously scheduled tasks are still executed.
+     */
+    public void shutdown() {
+        for (ScheduledExecutorService loop : loops) {
+            loop.shutdown();
+        }
+    }
+
+    /**
+     * Waits until all loops terminated after {@link #shutdown()}.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return true if all loops terminated
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ScheduledExecutorService loop : loops) {
+            if (!loop.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Shuts down all loops immediately.
+     */
+    @Override
+    public void close() {
+        for (ScheduledExecutorService loop : loops) {
+            loop.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package tel.schich.libdatachannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An off-heap ring buffer that native callbacks write fixed-layout event records into, instead of calling into the JVM.
+ * <p>
+ * A single consumer thread drains the records in batches and dispatches them to the {@link EventListenerContainer}s of the peers that use this
+ * ring (see {@link PeerConnectionConfiguration#withEventRing(EventRing)}). This keeps thread attachment, JNI upcalls and object allocation off
+ * libdatachannel's network threads. A ring can be shared by any number of peers and can also carry native log messages (see
+ * {@link LibDataChannel#setLogRing(EventRing)}).
+ * </p>
+ * <p>
+ * Native callbacks never wait for the consumer. Events that do not fit into the ring because it is full or too small, and events published
+ * after the ring has been closed, are delivered through the regular upcall path right away, possibly ahead of events still pending in the ring.
+ * The capacity should therefore comfortably exceed the maximum message size and the expected burst of events.
+ * </p>
+ * <p>
+ * The ring memory is reused as soon as the record was dispatched, so messages are copied before they are handed to an executor that does not
+ * run handlers inline, into a {@link MessageBufferPool} if one is configured. With {@link PeerConnection#INLINE_EXECUTOR} handlers receive
+ * views of the ring memory, which are only valid until the handler returns.
+ * </p>
+ */
+public class EventRing implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventRing.class);
+
+    public static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+    private static final int MIN_CAPACITY = 4096;
+
+    // the memory layout is shared with jni/src/event_ring.h, keep both in sync!
+    private static final int HEAD_OFFSET = 0;
+    private static final int TAIL_OFFSET = 64;
+    private static final int LOCK_OFFSET = 128;
+    private static final int CLOSED_OFFSET = 132;
+    private static final int CAPACITY_OFFSET = 136;
+    private static final int HEADER_SIZE = 192;
+    private static final int RECORD_HEADER_SIZE = 24;
+
+    static final int EVENT_PADDING = 0;
+    static final int EVENT_LOCAL_DESCRIPTION = 1;
+    static final int EVENT_LOCAL_CANDIDATE = 2;
+    static final int EVENT_STATE_CHANGE = 3;
+    static final int EVENT_ICE_STATE_CHANGE = 4;
+    static final int EVENT_GATHERING_STATE_CHANGE = 5;
+    static final int EVENT_SIGNALING_STATE_CHANGE = 6;
+    static final int EVENT_DATA_CHANNEL = 7;
+    static final int EVENT_TRACK = 8;
+    static final int EVENT_CHANNEL_OPEN = 9;
+    static final int EVENT_CHANNEL_CLOSED = 10;
+    static final int EVENT_CHANNEL_ERROR = 11;
+    static final int EVENT_CHANNEL_TEXT_MESSAGE = 12;
+    static final int EVENT_CHANNEL_BINARY_MESSAGE = 13;
+    static final int EVENT_CHANNEL_BUFFERED_AMOUNT_LOW = 14;
+    static final int EVENT_CHANNEL_AVAILABLE = 15;
+    static final int EVENT_LOG = 16;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private static final int SPIN_ROUNDS = 100;
+    private static final int YIELD_ROUNDS = 10;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    final ByteBuffer memory;
+    private final ByteBuffer data;
+    private final ByteBuffer payloadView;
+    private final int mask;
+    private final ConcurrentMap<Integer, PeerConnectionListener> peers;
+    private final Thread consumer;
+    private byte[] stringBuffer;
+    private volatile boolean closed;
+
+    private EventRing(int capacity, ThreadFactory threadFactory) {
+        if (capacity < MIN_CAPACITY || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two of at least " + MIN_CAPACITY + "!");
+        }
+        this.memory = ByteBuffer.allocateDirect(HEADER_SIZE + capacity).order(ByteOrder.nativeOrder());
+        this.memory.putInt(CAPACITY_OFFSET, capacity);
+        this.data = memory.duplicate().position(HEADER_SIZE).slice().order(ByteOrder.nativeOrder());
+        this.payloadView = data.duplicate();
+        this.mask = capacity - 1;
+        this.peers = new ConcurrentHashMap<>();
+        this.stringBuffer = new byte[256];
+        this.closed = false;
+        this.consumer = threadFactory.newThread(this::consume);
+    }
+
+    /**
+     * Creates a ring and starts its consumer thread.
+     *
+     * @param capacity      the capacity in bytes, must be a power of two
+     * @param threadFactory the factory for the consumer thread
+     * @return the ring
+     */
+    public static EventRing start(int capacity, ThreadFactory threadFactory) {
+        final EventRing ring = new EventRing(capacity, threadFactory);
+        ring.consumer.start();
+        return ring;
+    }
+
+    /**
+     * Creates a ring with a daemon consumer thread.
+     *
+     * @param capacity the capacity in bytes, must be a power of two
+     * @return the ring
+     */
+    public static EventRing start(int capacity) {
+        return start(capacity, r -> {
+            final Thread thread = new Thread(r, "libdatachannel-event-ring");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void register(PeerConnection peer) {
+        if (closed) {
+            throw new IllegalStateException("The event ring is already closed!");
+        }
+        peers.put(peer.peerHandle, peer.listener);
+    }
+
+    void deregister(PeerConnection peer) {
+        peers.remove(peer.peerHandle);
+    }
+
+    private void consume() {
+        int idleRounds = 0;
+        while (!closed) {
+            if (drain() > 0) {
+                idleRounds = 0;
+                continue;
+            }
+            idleRounds++;
+            if (idleRounds <= SPIN_ROUNDS) {
+                Thread.onSpinWait();
+            } else if (idleRounds <= SPIN_ROUNDS + YIELD_ROUNDS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(idleRounds - SPIN_ROUNDS - YIELD_ROUNDS, 10)));
+            }
+        }
+        // producers stop publishing once closed, wait for a concurrent producer to finish and deliver what is left
+        while ((int) INTS.getVolatile(memory, LOCK_OFFSET) != 0) {
+            Thread.onSpinWait();
+        }
+        drain();
+    }
+
+    private int drain() {
+        long head = (long) LONGS.get(memory, HEAD_OFFSET);
+        final long tail = (long) LONGS.getAcquire(memory, TAIL_OFFSET);
+        int events = 0;
+        while (head < tail) {
+            final int index = (int) (head & mask);
+            final int recordLength = data.getInt(index);
+            final int type = data.getInt(index + 4);
+            if (type != EVENT_PADDING) {
+                try {
+                    dispatch(index, type);
+                } catch (Throwable t) {
+                    LOGGER.error("Failed to dispatch event of type {}!", type, t);
+                }
+                events++;
+            }
+            head += recordLength;
+        }
+        LONGS.setRelease(memory, HEAD_OFFSET, head);
+        return events;
+    }
+
+    private void dispatch(int index, int type) {
+        if (type == EVENT_LOG) {
+            LibDataChannel.log(data.getInt(index + 16), string(index + RECORD_HEADER_SIZE, data.getInt(index + 20)));
+            return;
+        }
+        final PeerConnectionListener listener = peers.get(data.getInt(index + 8));
+        if (listener == null) {
+            return;
+        }
+        final int handle = data.getInt(index + 12);
+        final int value = data.getInt(index + 16);
+        final int payloadOffset = index + RECORD_HEADER_SIZE;
+        final int payloadLength = data.getInt(index + 20);
+        switch (type) {
+            case EVENT_LOCAL_DESCRIPTION:
+                listener.onLocalDescription(string(payloadOffset, value), string(payloadOffset + value, payloadLength - value));
+                break;
+            case EVENT_LOCAL_CANDIDATE:
+                listener.onLocalCandidate(string(payloadOffset, value), string(payloadOffset + value, payloadLength - value));
+                break;
+            case EVENT_STATE_CHANGE:
+                listener.onStateChange(value);
+                break;
+            case EVENT_ICE_STATE_CHANGE:
+                listener.onIceStateChange(value);
+                break;
+            case EVENT_GATHERING_STATE_CHANGE:
+                listener.onGatheringStateChange(value);
+                break;
+            case EVENT_SIGNALING_STATE_CHANGE:
+                listener.onSignalingStateChange(value);
+                break;
+            case EVENT_DATA_CHANNEL:
+                listener.onDataChannel(handle);
+                break;
+            case EVENT_TRACK:
+                listener.onTrack(handle);
+                break;
+            case EVENT_CHANNEL_OPEN:
+                listener.onChannelOpen(handle);
+                break;
+            case EVENT_CHANNEL_CLOSED:
+                listener.onChannelClosed(handle);
+                break;
+            case EVENT_CHANNEL_ERROR:
+                listener.onChannelError(handle, string(payloadOffset, payloadLength));
+                break;
+            case EVENT_CHANNEL_TEXT_MESSAGE:
+                listener.onChannelTextMessage(handle, payload(payloadOffset, payloadLength));
+                break;
+            case EVENT_CHANNEL_BINARY_MESSAGE:
+                listener.onChannelBinaryMessage(handle, payload(payloadOffset, payloadLength));
+                break;
+            case EVENT_CHANNEL_BUFFERED_AMOUNT_LOW:
+                listener.onChannelBufferedAmountLow(handle);
+                break;
+            case EVENT_CHANNEL_AVAILABLE:
+                listener.onChannelAvailable(handle);
+                break;
+            default:
+                LOGGER.error("Unknown event type {}!", type);
+        }
+    }
+
+    private ByteBuffer payload(int offset, int length) {
+        payloadView.limit(offset + length).position(offset);
+        return payloadView.slice();
+    }
+
+    private String string(int offset, int length) {
+        if (stringBuffer.length < length) {
+            stringBuffer = new byte[Integer.highestOneBit(length) << 1];
+        }
+        payloadView.limit(offset + length).position(offset);
+        payloadView.get(stringBuffer, 0, length);
+        return new String(stringBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns whether the ring has been closed.
+     *
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the ring. Events published afterwards are delivered through the regular upcall path, pending events are still drained.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        INTS.setVolatile(memory, CLOSED_OFFSET, 1);
+        closed = true;
+        LockSupport.unpark(consumer);
+        if (Thread.currentThread() != consumer) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        peers.clear();
+    }
+}
@@ -1,15 +1,34 @@
 package tel.schich.libdatachannel;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tel.schich.jniaccess.JNIAccess;
+import tel.schich.libdatachannel.PeerConnectionConfiguration.CertificateType;
+
+import static tel.schich.libdatachannel.LibDataChannelNative.initLogger;
+import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetSctpSettings;
+import static tel.schich.libdatachannel.LibDataChannelNative.setupLogRing;
+import static tel.schich.libdatachannel.Util.wrapError;
 
 import java.lang.ref.Cleaner;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class LibDataChannel {
     static final Cleaner CLEANER = Cleaner.create();
     private static final Logger LOGGER = LoggerFactory.getLogger(LibDataChannel.class);
     private static volatile boolean initialized = false;
+    private static volatile LogLevel logLevel = LogLevel.RTC_LOG_WARNING;
+    @Nullable
+    private static EventRing logRing = null;
+    private static final long WARM_UP_TIMEOUT_MILLIS = 5000;
+    @Nullable
+    private static CompletableFuture<Void> warmUp = null;
+    private static final Map<CertificateType, CompletableFuture<Void>> CERTIFICATES = new EnumMap<>(CertificateType.class);
 
     public static final String LIB_NAME = "datachannel-java";
 
@@ -21,9 +40,156 @@ public class LibDataChannel {
             return;
         }
 
+        final long start = System.nanoTime();
+        // JNI_OnLoad runs rtcPreload, so this includes the initialization of libdatachannel's global state
         Platform.loadNativeLibrary(LIB_NAME, LibDataChannel.class);
+        LOGGER.debug("Loaded and preloaded {} in {} ms", LIB_NAME, (System.nanoTime() - start) / 1_000_000);
 
+        // set before calling into LibDataChannelNative, its static initializer calls back into this method
         initialized = true;
+        syncLogLevel();
+    }
+
+    /**
+     * Initializes the library on a background thread. Loading the native library also initializes OpenSSL, usrsctp and libjuice, so calling
+     * this early at startup keeps that latency off the thread that creates the first connection.
+     *
+     * @param warmUp whether to additionally create and close a throwaway peer connection with a data channel and wait for its local
+     *               description, which initializes the bindings' classes, JNI up-calls and the default DTLS certificate
+     * @return a future that completes once the library is initialized and, if requested, warmed up
+     */
+    public static CompletableFuture<Void> initializeAsync(boolean warmUp) {
+        final CompletableFuture<Void> future = CompletableFuture.runAsync(LibDataChannel::initialize, LibDataChannel::runInBackground);
+        if (!warmUp) {
+            return future;
+        }
+        synchronized (LibDataChannel.class) {
+            if (LibDataChannel.warmUp == null) {
+                LibDataChannel.warmUp = future.thenRun(LibDataChannel::warmUp);
+            }
+            return LibDataChannel.warmUp;
+        }
+    }
+
+    /**
+     * Initializes the library on a background thread without warming it up.
+     *
+     * @return a future that completes once the library is initialized
+     * @see #initializeAsync(boolean)
+     */
+    public static CompletableFuture<Void> initializeAsync() {
+        return initializeAsync(false);
+    }
+
+    private static void runInBackground(Runnable task) {
+        final Thread thread = new Thread(task, "libdatachannel-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void warmUp() {
+        final long start = System.nanoTime();
+        describeThrowawayPeer(PeerConnectionConfiguration.DEFAULT);
+        LOGGER.debug("Warmed up {} in {} ms", LIB_NAME, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Generates the DTLS certificate of the given type on a background thread.
+     * <p>
+     * libdatachannel generates a single certificate per type and shares it between all peer connections of the process until
+     * {@code rtcCleanup}, but the first peer connection of each type waits for the key generation, which takes tens of milliseconds for RSA.
+     * Preparing the certificate ahead of time, e.g. before accepting a burst of connections, takes that cost off the connection path.
+     * </p>
+     *
+     * @param type the certificate type of the peer connections that will be created
+     * @return a future that completes once the certificate is available
+     */
+    public static CompletableFuture<Void> prepareCertificate(CertificateType type) {
+        synchronized (CERTIFICATES) {
+            return CERTIFICATES.computeIfAbsent(type, t -> CompletableFuture.runAsync(() -> {
+                final long start = System.nanoTime();
+                describeThrowawayPeer(PeerConnectionConfiguration.DEFAULT.withCertificateType(t));
+                LOGGER.debug("Prepared certificate {} in {} ms", t, (System.nanoTime() - start) / 1_000_000);
+            }, LibDataChannel::runInBackground));
+        }
+    }
+
+    /**
+     * Creates a peer connection with a data channel and waits until its local description has been generated, which requires its certificate.
+     */
+    private static void describeThrowawayPeer(PeerConnectionConfiguration config) {
+        final CountDownLatch described = new CountDownLatch(1);
+        try (PeerConnection peer = PeerConnection.createPeer(config)) {
+            peer.onLocalDescription.register((p, sdp, type) -> described.countDown());
+            peer.createDataChannel("warm-up");
+            if (!described.await(WARM_UP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("No local description within {} ms during warm-up", WARM_UP_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Changes the level of libdatachannel's native logging. Native log messages are only produced and passed to SLF4J up to this level.
+     * <p>
+     * Defaults to the most verbose level enabled for this class's SLF4J logger at initialization. The SLF4J level is not watched afterwards:
+     * messages above a level enabled later are never produced natively, so this or {@link #syncLogLevel()} has to be called again when the
+     * logging configuration changes at runtime.
+     * </p>
+     *
+     * @param level the level
+     */
+    public static void setLogLevel(LogLevel level) {
+        initialize();
+        wrapError("initLogger", initLogger(level.level));
+        logLevel = level;
+    }
+
+    /**
+     * Sets the native log level to the most verbose level currently enabled for this class's SLF4J logger, e.g. after the logging
+     * configuration was reloaded.
+     */
+    public static void syncLogLevel() {
+        setLogLevel(LogLevel.effectiveLevel(LOGGER));
+    }
+
+    /**
+     * Returns the current level of libdatachannel's native logging.
+     *
+     * @return the level
+     */
+    public static LogLevel logLevel() {
+        return logLevel;
+    }
+
+    /**
+     * Changes libdatachannel's global SCTP settings. They apply to all SCTP associations created afterwards, so this should be called before
+     * creating peer connections.
+     *
+     * @param settings the settings
+     * @see <a href="https://github.com/paullouisageneau/libdatachannel/blob/master/DOC.md#rtcsetsctpsettings">Documentation</a>
+     */
+    public static void setSctpSettings(SctpSettings settings) {
+        initialize();
+        wrapError("rtcSetSctpSettings", rtcSetSctpSettings(settings.recvBufferSize, settings.sendBufferSize, settings.maxChunksOnQueue,
+                settings.initialCongestionWindow, settings.maxBurst, settings.congestionControl.module, settings.delayedSackTimeMs,
+                settings.minRetransmitTimeoutMs, settings.maxRetransmitTimeoutMs, settings.initialRetransmitTimeoutMs,
+                settings.maxRetransmitAttempts, settings.heartbeatIntervalMs));
+    }
+
+    /**
+     * Writes native log messages into the ring instead of calling into the JVM from libdatachannel's threads. The ring's consumer thread passes
+     * them to SLF4J. Messages are logged synchronously again once the ring is closed or {@code null} is passed.
+     *
+     * @param ring the ring or null to log synchronously
+     */
+    public static synchronized void setLogRing(@Nullable EventRing ring) {
+        initialize();
+        // returns once no native callback is writing to the previous ring anymore
+        wrapError("setupLogRing", setupLogRing(ring == null ? null : ring.memory));
+        // keep the ring's memory reachable while native code writes to it, the previous ring may be collected now
+        logRing = ring;
     }
 
     /**
@@ -9,8 +9,15 @@ class LibDataChannelNative {
         LibDataChannel.initialize();
     }
 
-    static native int rtcCreatePeerConnection(String @Nullable [] iceServers, @Nullable String proxyServer, @Nullable String bindAddress, int certificateType, int iceTransportPolicy, boolean enableIceTcp, boolean enableIceUdpMux, boolean disableAutoNegotiation, boolean forceMediaTransport, short portRangeBegin, short portRangeEnd, int mtu, int maxMessageSize);
+    static native long compileConfiguration(String @Nullable [] iceServers, @Nullable String proxyServer, @Nullable String bindAddress, int certificateType, int iceTransportPolicy, boolean enableIceTcp, boolean enableIceUdpMux, boolean disableAutoNegotiation, boolean forceMediaTransport, short portRangeBegin, short portRangeEnd, int mtu, int maxMessageSize);
+    static native void freeConfiguration(long configuration);
+    static native int rtcCreatePeerConnection(long configuration);
     static native int setupPeerConnectionListener(int peerHandle, PeerConnectionListener listener);
+    static native int setupEventRing(int peerHandle, @Nullable ByteBuffer ring);
+    static native int setupDataChannelListener(int channelHandle, DataChannel channel);
+    static native int initLogger(int level);
+    static native int setupLogRing(@Nullable ByteBuffer ring);
+    static native int rtcSetSctpSettings(int recvBufferSize, int sendBufferSize, int maxChunksOnQueue, int initialCongestionWindow, int maxBurst, int congestionControlModule, int delayedSackTimeMs, int minRetransmitTimeoutMs, int maxRetransmitTimeoutMs, int initialRetransmitTimeoutMs, int maxRetransmitAttempts, int heartbeatIntervalMs);
     static native int rtcClosePeerConnection(int peerHandle);
     static native int rtcDeletePeerConnection(int peerHandle);
 
@@ -34,11 +41,18 @@ class LibDataChannelNative {
     static native int rtcSetTrackCallback(int peerHandle, boolean set);
 
     static native int rtcAddTrack(int peerHandle, String sdp);
-    static native int rtcAddTrackEx(int peerHandle, int direction, int codec);
+    static native int rtcAddTrackEx(int peerHandle, int direction, int codec, int payloadType, int ssrc, @Nullable String mid, @Nullable String name, @Nullable String msid, @Nullable String trackId, @Nullable String profile);
     static native String rtcGetTrackDescription(int trackHandle);
     static native int rtcGetTrackDirection(int trackHandle);
     static native String rtcGetTrackMid(int trackHandle);
     static native int rtcDeleteTrack(int trackHandle);
+    static native int setupTrackListener(int trackHandle, Track track);
+    static native int rtcSetTrackOpenCallback(int trackHandle, boolean set);
+    static native int rtcSetTrackClosedCallback(int trackHandle, boolean set);
+    static native int rtcSetTrackErrorCallback(int trackHandle, boolean set);
+    static native int rtcSetTrackMessageCallback(int trackHandle, boolean set);
+    static native int setPacketizer(int trackHandle, int codec, int ssrc, String cname, int payloadType, int clockRate, int maxFragmentSize, int nalSeparator, int obuPacketization, boolean srReporter, int nackResponderPackets);
+    static native int sendFrame(int trackHandle, ByteBuffer data, int offset, int length, long timestamp);
 
     static native int rtcGetMaxDataChannelStream(int peerHandle);
     static native int rtcGetRemoteMaxMessageSize(int peerHandle);
@@ -50,9 +64,12 @@ class LibDataChannelNative {
     static native int rtcMaxMessageSize(int channelHandle);
     static native int rtcSetBufferedAmountLowThreshold(int channelHandle, int amount);
     static native int rtcSendMessage(int channelHandle, ByteBuffer data, int offset, int length);
+    static native int sendMessageBatch(int channelHandle, ByteBuffer[] buffers, int[] regions, int count, int bufferedAmountLimit);
+    static native int sendMessageSlices(int channelHandle, ByteBuffer buffer, int[] offsets, int[] lengths, int count, int bufferedAmountLimit);
     @Nullable
     static native ByteBuffer rtcReceiveMessage(int channelHandle);
     static native int rtcReceiveMessageInto(int channelHandle, ByteBuffer buffer, int offset, int capacity);
+    static native int receiveMessageBatch(int channelHandle, ByteBuffer buffer, int offset, int capacity, int[] lengths);
     static native int rtcGetAvailableAmount(int channelHandle);
     static native int rtcGetBufferedAmount(int channelHandle);
     static native int rtcGetDataChannelStream(int channelHandle);
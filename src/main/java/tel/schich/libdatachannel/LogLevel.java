@@ -0,0 +1,44 @@
+package tel.schich.libdatachannel;
+
+import org.slf4j.Logger;
+
+/**
+ * The level of libdatachannel's native logging, see {@link LibDataChannel#setLogLevel(LogLevel)}.
+ */
+public enum LogLevel {
+    RTC_LOG_NONE(0),
+    RTC_LOG_FATAL(1),
+    RTC_LOG_ERROR(2),
+    RTC_LOG_WARNING(3),
+    RTC_LOG_INFO(4),
+    RTC_LOG_DEBUG(5),
+    RTC_LOG_VERBOSE(6),
+    ;
+
+    final int level;
+
+    LogLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Returns the most verbose level that the logger does not discard.
+     *
+     * @param logger the logger
+     * @return the level
+     */
+    static LogLevel effectiveLevel(Logger logger) {
+        if (logger.isTraceEnabled()) {
+            return RTC_LOG_VERBOSE;
+        } else if (logger.isDebugEnabled()) {
+            return RTC_LOG_DEBUG;
+        } else if (logger.isInfoEnabled()) {
+            return RTC_LOG_INFO;
+        } else if (logger.isWarnEnabled()) {
+            return RTC_LOG_WARNING;
+        } else if (logger.isErrorEnabled()) {
+            return RTC_LOG_ERROR;
+        }
+        return RTC_LOG_NONE;
+    }
+}
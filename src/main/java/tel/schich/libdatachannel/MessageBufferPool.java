@@ -0,0 +1,112 @@
+package tel.schich.libdatachannel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A pool of direct {@link ByteBuffer}s in power-of-two size classes.
+ * <p>
+ * libdatachannel only guarantees the memory of an incoming message for the duration of the native callback. When a pool is configured using
+ * {@link PeerConnectionConfiguration#withMessageBufferPool(MessageBufferPool)}, each message for handlers that do not run on
+ * {@link PeerConnection#INLINE_EXECUTOR} is copied once into a pooled buffer, which is handed to the message handlers and released back into
+ * the pool after all handlers returned. Handlers must not retain the buffer beyond their invocation.
+ * </p>
+ * <p>
+ * Each size class retains at most a fixed number of buffers, so the retained native memory is bounded. Messages larger than the largest size
+ * class are copied into unpooled buffers.
+ * </p>
+ */
+public class MessageBufferPool {
+    public static final int DEFAULT_MIN_BUFFER_SIZE = 256;
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 256 * 1024;
+    public static final int DEFAULT_BUFFERS_PER_CLASS = 64;
+
+    private final int minShift;
+    private final int maxBufferSize;
+    private final List<ArrayBlockingQueue<ByteBuffer>> sizeClasses;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param minBufferSize    the size of the smallest size class, rounded up to a power of two
+     * @param maxBufferSize    the size of the largest size class, rounded up to a power of two
+     * @param buffersPerClass  the maximum number of buffers retained per size class
+     */
+    public MessageBufferPool(int minBufferSize, int maxBufferSize, int buffersPerClass) {
+        if (minBufferSize <= 0 || maxBufferSize < minBufferSize) {
+            throw new IllegalArgumentException("Invalid buffer size range: " + minBufferSize + " - " + maxBufferSize);
+        }
+        if (buffersPerClass <= 0) {
+            throw new IllegalArgumentException("buffersPerClass must be positive!");
+        }
+        this.minShift = ceilLog2(minBufferSize);
+        final int maxShift = ceilLog2(maxBufferSize);
+        this.maxBufferSize = 1 << maxShift;
+        this.sizeClasses = new ArrayList<>(maxShift - minShift + 1);
+        for (int i = minShift; i <= maxShift; i++) {
+            this.sizeClasses.add(new ArrayBlockingQueue<>(buffersPerClass));
+        }
+    }
+
+    /**
+     * Creates a new pool with the default size classes from {@value #DEFAULT_MIN_BUFFER_SIZE} to {@value #DEFAULT_MAX_BUFFER_SIZE} bytes.
+     *
+     * @return the pool
+     */
+    public static MessageBufferPool create() {
+        return new MessageBufferPool(DEFAULT_MIN_BUFFER_SIZE, DEFAULT_MAX_BUFFER_SIZE, DEFAULT_BUFFERS_PER_CLASS);
+    }
+
+    private static int ceilLog2(int value) {
+        return 32 - Integer.numberOfLeadingZeros(value - 1);
+    }
+
+    private int sizeClass(int size) {
+        return Math.max(0, ceilLog2(size) - minShift);
+    }
+
+    /**
+     * Acquires a direct buffer with at least the given capacity. The buffer's position is 0 and its limit is set to size.
+     *
+     * @param size the required number of bytes
+     * @return the buffer
+     */
+    public ByteBuffer acquire(int size) {
+        if (size > maxBufferSize) {
+            return ByteBuffer.allocateDirect(size);
+        }
+        final int sizeClass = sizeClass(size);
+        ByteBuffer buffer = sizeClasses.get(sizeClass).poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(1 << (sizeClass + minShift));
+        }
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #acquire(int)} to the pool. Buffers that do not belong to a size class or that exceed the retention
+     * limit of their size class are left to the garbage collector.
+     *
+     * @param buffer the buffer
+     */
+    public void release(ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        if (!buffer.isDirect() || capacity > maxBufferSize || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        final int shift = ceilLog2(capacity);
+        if (shift < minShift) {
+            return;
+        }
+        sizeClasses.get(shift - minShift).offer(buffer);
+    }
+
+    ByteBuffer copyOf(ByteBuffer message) {
+        final ByteBuffer copy = acquire(message.remaining());
+        copy.put(message.duplicate()).flip();
+        return copy;
+    }
+}
@@ -0,0 +1,206 @@
+package tel.schich.libdatachannel;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The settings of a packetizer attached with {@link Track#setPacketizer(PacketizerInit)}, which fragments the frames sent with
+ * {@link Track#sendFrame(java.nio.ByteBuffer, long)} into RTP packets natively.
+ *
+ * @see <a href="https://github.com/paullouisageneau/libdatachannel/blob/master/DOC.md#rtcseth264packetizer">Documentation</a>
+ */
+public class PacketizerInit {
+    public static final int VIDEO_CLOCK_RATE = 90000;
+    public static final String DEFAULT_CNAME = "libdatachannel-java";
+    public static final PacketizerInit DEFAULT = new PacketizerInit(Track.Codec.DEFAULT, 0, DEFAULT_CNAME, 0, VIDEO_CLOCK_RATE, 0, NalUnitSeparator.DEFAULT, ObuPacketization.DEFAULT, false, 0);
+
+    final Track.Codec codec;
+    final int ssrc;
+    final String cname;
+    final int payloadType;
+    final int clockRate;
+    final int maxFragmentSize;
+    final NalUnitSeparator nalSeparator;
+    final ObuPacketization obuPacketization;
+    final boolean srReporter;
+    final int nackResponderPackets;
+
+    private PacketizerInit(Track.Codec codec, int ssrc, String cname, int payloadType, int clockRate, int maxFragmentSize, NalUnitSeparator nalSeparator, ObuPacketization obuPacketization, boolean srReporter, int nackResponderPackets) {
+        this.codec = codec;
+        this.ssrc = ssrc;
+        this.cname = cname;
+        this.payloadType = payloadType;
+        this.clockRate = clockRate;
+        this.maxFragmentSize = maxFragmentSize;
+        this.nalSeparator = nalSeparator;
+        this.obuPacketization = obuPacketization;
+        this.srReporter = srReporter;
+        this.nackResponderPackets = nackResponderPackets;
+    }
+
+    /**
+     * Creates packetizer settings matching a track added with {@link PeerConnection#addTrack(TrackInit)}. The track's name is used as the
+     * cname, falling back to its mid and then to {@value #DEFAULT_CNAME}.
+     *
+     * @param init      the track's settings
+     * @param clockRate the RTP clock rate, e.g. {@value #VIDEO_CLOCK_RATE} for video
+     * @return the settings
+     */
+    public static PacketizerInit of(TrackInit init, int clockRate) {
+        return new PacketizerInit(init.codec(), init.ssrc(), init.name().orElseGet(() -> init.mid().orElse(DEFAULT_CNAME)), init.payloadType(), clockRate, 0, NalUnitSeparator.DEFAULT, ObuPacketization.DEFAULT, false, 0);
+    }
+
+    /**
+     * the codec, which selects the packetizer: H264, H265, AV1, Opus or AAC (libdatachannel has no VP8 or VP9 packetizer)
+     */
+    public PacketizerInit withCodec(Track.Codec codec) {
+        return new PacketizerInit(codec, ssrc, cname, payloadType, clockRate, maxFragmentSize, nalSeparator, obuPacketization, srReporter, nackResponderPackets);
+    }
+
+    public Track.Codec codec() {
+        return codec;
+    }
+
+    /**
+     * the SSRC of the RTP stream
+     */
+    public PacketizerInit withSsrc(int ssrc) {
+        return new PacketizerInit(codec, ssrc, cname, payloadType, clockRate, maxFragmentSize, nalSeparator, obuPacketization, srReporter, nackResponderPackets);
+    }
+
+    public int ssrc() {
+        return ssrc;
+    }
+
+    /**
+     * the canonical name used in RTCP, required by libdatachannel, defaults to {@value #DEFAULT_CNAME}
+     */
+    public PacketizerInit withCname(String cname) {
+        return new PacketizerInit(codec, ssrc, Objects.requireNonNull(cname, "cname"), payloadType, clockRate, maxFragmentSize, nalSeparator, obuPacketization, srReporter, nackResponderPackets);
+    }
+
+    public String cname() {
+        return cname;
+    }
+
+    /**
+     * the RTP payload type
+     */
+    public PacketizerInit withPayloadType(int payloadType) {
+        return new PacketizerInit(codec, ssrc, cname, payloadType, clockRate, maxFragmentSize, nalSeparator, obuPacketization, srReporter, nackResponderPackets);
+    }
+
+    public int payloadType() {
+        return payloadType;
+    }
+
+    /**
+     * the RTP clock rate
+     */
+    public PacketizerInit withClockRate(int clockRate) {
+        return new PacketizerInit(codec, ssrc, cname, payloadType, clockRate, maxFragmentSize, nalSeparator, obuPacketization, srReporter, nackResponderPackets);
+    }
+
+    public int clockRate() {
+        return clockRate;
+    }
+
+    /**
+     * (optional): maximum size of the fragments (H264, H265 and AV1), 0 means default
+     */
+    public PacketizerInit withMaxFragmentSize(int maxFragmentSize) {
+        return new PacketizerInit(codec, ssrc, cname, payloadType, clockRate, maxFragmentSize, nalSeparator, obuPacketization, srReporter, nackResponderPackets);
+    }
+
+    public int maxFragmentSize() {
+        return maxFragmentSize;
+    }
+
+    /**
+     * (optional): how NAL units are separated in the frames (H264 and H265)
+     */
+    public PacketizerInit withNalSeparator(NalUnitSeparator nalSeparator) {
+        return new PacketizerInit(codec, ssrc, cname, payloadType, clockRate, maxFragmentSize, nalSeparator, obuPacketization, srReporter, nackResponderPackets);
+    }
+
+    public NalUnitSeparator nalSeparator() {
+        return nalSeparator;
+    }
+
+    /**
+     * (optional): whether the frames are single OBUs or temporal units (AV1)
+     */
+    public PacketizerInit withObuPacketization(ObuPacketization obuPacketization) {
+        return new PacketizerInit(codec, ssrc, cname, payloadType, clockRate, maxFragmentSize, nalSeparator, obuPacketization, srReporter, nackResponderPackets);
+    }
+
+    public ObuPacketization obuPacketization() {
+        return obuPacketization;
+    }
+
+    /**
+     * (optional): whether to chain an RTCP sender report reporter after the packetizer
+     */
+    public PacketizerInit withSrReporter(boolean srReporter) {
+        return new PacketizerInit(codec, ssrc, cname, payloadType, clockRate, maxFragmentSize, nalSeparator, obuPacketization, srReporter, nackResponderPackets);
+    }
+
+    public boolean srReporter() {
+        return srReporter;
+    }
+
+    /**
+     * (optional): if positive, chains an RTCP NACK responder that keeps this many sent packets for retransmission
+     */
+    public PacketizerInit withNackResponder(int maxStoredPackets) {
+        return new PacketizerInit(codec, ssrc, cname, payloadType, clockRate, maxFragmentSize, nalSeparator, obuPacketization, srReporter, maxStoredPackets);
+    }
+
+    public int nackResponderPackets() {
+        return nackResponderPackets;
+    }
+
+    public enum NalUnitSeparator {
+        RTC_NAL_SEPARATOR_LENGTH(0),
+        RTC_NAL_SEPARATOR_LONG_START_SEQUENCE(1),
+        RTC_NAL_SEPARATOR_SHORT_START_SEQUENCE(2),
+        RTC_NAL_SEPARATOR_START_SEQUENCE(3),
+        ;
+
+        public static final NalUnitSeparator DEFAULT = RTC_NAL_SEPARATOR_LENGTH;
+
+        private static final Map<Integer, NalUnitSeparator> MAP = Util.mappedEnum(NalUnitSeparator.values(), s -> s.separator);
+        final int separator;
+
+        NalUnitSeparator(int separator) {
+            this.separator = separator;
+        }
+
+        @Nullable
+        public static NalUnitSeparator of(final int separator) {
+            return MAP.get(separator);
+        }
+    }
+
+    public enum ObuPacketization {
+        RTC_OBU_PACKETIZED_OBU(0),
+        RTC_OBU_PACKETIZED_TEMPORAL_UNIT(1),
+        ;
+
+        public static final ObuPacketization DEFAULT = RTC_OBU_PACKETIZED_OBU;
+
+        private static final Map<Integer, ObuPacketization> MAP = Util.mappedEnum(ObuPacketization.values(), s -> s.packetization);
+        final int packetization;
+
+        ObuPacketization(int packetization) {
+            this.packetization = packetization;
+        }
+
+        @Nullable
+        public static ObuPacketization of(final int packetization) {
+            return MAP.get(packetization);
+        }
+    }
+}
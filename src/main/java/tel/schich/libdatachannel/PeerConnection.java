@@ -30,7 +30,10 @@ import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetRemoteDescrip
 import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetSignalingStateChangeCallback;
 import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetStateChangeCallback;
 import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetTrackCallback;
+import static tel.schich.libdatachannel.LibDataChannelNative.setupDataChannelListener;
+import static tel.schich.libdatachannel.LibDataChannelNative.setupEventRing;
 import static tel.schich.libdatachannel.LibDataChannelNative.setupPeerConnectionListener;
+import static tel.schich.libdatachannel.LibDataChannelNative.setupTrackListener;
 import static tel.schich.libdatachannel.Util.parseAddress;
 import static tel.schich.libdatachannel.Util.wrapError;
 import static tel.schich.libdatachannel.exception.LibDataChannelException.ERR_INVALID;
@@ -38,25 +41,42 @@ import static tel.schich.libdatachannel.exception.LibDataChannelException.ERR_IN
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
 import java.net.InetSocketAddress;
-import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class PeerConnection implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(PeerConnection.class);
 
+    /**
+     * Runs listeners directly on libdatachannel's thread. Events dispatched on this executor skip the task submission entirely, so the
+     * dispatch itself does not allocate (see {@link #createPeer(PeerConnectionConfiguration, Executor)}). Each message still arrives in a
+     * newly created {@link java.nio.ByteBuffer} view of the native memory. Listeners must not block.
+     */
+    public static final Executor INLINE_EXECUTOR = Runnable::run;
+
     final int peerHandle;
     private final Executor executor;
+    @Nullable
+    private final ScheduledExecutorService eventLoop;
+    private final boolean serialDispatch;
     private final ConcurrentMap<Integer, DataChannel> channels;
     private final ConcurrentMap<Integer, Track> tracks;
     private final Cleaner.Cleanable cleanable;
     final PeerConnectionListener listener;
+    @Nullable
+    final MessageBufferPool messageBufferPool;
+    @Nullable
+    private final EventRing eventRing;
+    @Nullable
+    final DispatchQueue dispatchQueue;
 
     public final EventListenerContainer<PeerConnectionCallback.LocalDescription> onLocalDescription;
     public final EventListenerContainer<PeerConnectionCallback.LocalCandidate> onLocalCandidate;
@@ -67,21 +87,28 @@ public class PeerConnection implements Closeable {
     public final EventListenerContainer<PeerConnectionCallback.DataChannel> onDataChannel;
     public final EventListenerContainer<PeerConnectionCallback.Track> onTrack;
 
-    private PeerConnection(int peerHandle, final Executor executor) {
+    private PeerConnection(int peerHandle, final PeerConnectionConfiguration config, final Executor executor, @Nullable final ScheduledExecutorService eventLoop) {
         this.peerHandle = peerHandle;
         this.executor = executor;
+        this.eventLoop = eventLoop;
+        this.serialDispatch = config.serialDispatch && executor != INLINE_EXECUTOR;
+        this.messageBufferPool = config.messageBufferPool;
+        this.eventRing = config.eventRing;
+        this.dispatchQueue = config.dispatchQueueCapacity > 0 ? new DispatchQueue(config.dispatchQueueCapacity, config.overloadPolicy) : null;
         this.channels = new ConcurrentHashMap<>();
         this.tracks = new ConcurrentHashMap<>();
         this.listener = new PeerConnectionListener(this);
-
-        this.onLocalDescription = new EventListenerContainer<>("LocalDescription", set -> rtcSetLocalDescriptionCallback(peerHandle, set), executor);
-        this.onLocalCandidate = new EventListenerContainer<>("LocalCandidate", set -> rtcSetLocalCandidateCallback(peerHandle, set), executor);
-        this.onStateChange = new EventListenerContainer<>("StateChange", set -> rtcSetStateChangeCallback(peerHandle, set), executor);
-        this.onIceStateChange = new EventListenerContainer<>("IceStateChange", set -> rtcSetIceStateChangeCallback(peerHandle, set), executor);
-        this.onGatheringStateChange = new EventListenerContainer<>("GatheringStateChange", set -> rtcSetGatheringStateChangeCallback(peerHandle, set), executor);
-        this.onSignalingStateChange = new EventListenerContainer<>("SignalingStateChange", set -> rtcSetSignalingStateChangeCallback(peerHandle, set), executor);
-        this.onDataChannel = new EventListenerContainer<>("DataChannel", set -> rtcSetDataChannelCallback(peerHandle, set), executor);
-        this.onTrack = new EventListenerContainer<>("Track", set -> rtcSetTrackCallback(peerHandle, set), executor);
+        // all peer level events share one strand, each channel gets its own
+        final Executor peerExecutor = serialDispatch ? new SerialExecutor(executor) : executor;
+
+        this.onLocalDescription = new EventListenerContainer<>("LocalDescription", set -> rtcSetLocalDescriptionCallback(peerHandle, set), peerExecutor, dispatchQueue, DispatchQueue.Delivery.GUARANTEED);
+        this.onLocalCandidate = new EventListenerContainer<>("LocalCandidate", set -> rtcSetLocalCandidateCallback(peerHandle, set), peerExecutor, dispatchQueue, DispatchQueue.Delivery.GUARANTEED);
+        this.onStateChange = new EventListenerContainer<>("StateChange", set -> rtcSetStateChangeCallback(peerHandle, set), peerExecutor, dispatchQueue, DispatchQueue.Delivery.COALESCING);
+        this.onIceStateChange = new EventListenerContainer<>("IceStateChange", set -> rtcSetIceStateChangeCallback(peerHandle, set), peerExecutor, dispatchQueue, DispatchQueue.Delivery.COALESCING);
+        this.onGatheringStateChange = new EventListenerContainer<>("GatheringStateChange", set -> rtcSetGatheringStateChangeCallback(peerHandle, set), peerExecutor, dispatchQueue, DispatchQueue.Delivery.COALESCING);
+        this.onSignalingStateChange = new EventListenerContainer<>("SignalingStateChange", set -> rtcSetSignalingStateChangeCallback(peerHandle, set), peerExecutor, dispatchQueue, DispatchQueue.Delivery.COALESCING);
+        this.onDataChannel = new EventListenerContainer<>("DataChannel", set -> rtcSetDataChannelCallback(peerHandle, set), peerExecutor, dispatchQueue, DispatchQueue.Delivery.GUARANTEED);
+        this.onTrack = new EventListenerContainer<>("Track", set -> rtcSetTrackCallback(peerHandle, set), peerExecutor, dispatchQueue, DispatchQueue.Delivery.GUARANTEED);
 
         this.cleanable = LibDataChannel.CLEANER.register(this, () -> {
             // make sure not to capture this here, that would be a memory leak
@@ -91,18 +118,6 @@ public class PeerConnection implements Closeable {
         });
     }
 
-    private static String @Nullable [] iceUrisToStrings(@Nullable Collection<URI> uris) {
-        if (uris == null || uris.isEmpty()) {
-            return null;
-        }
-        int index = 0;
-        String[] strings = new String[uris.size()];
-        for (URI server : uris) {
-            strings[index++] = server.toASCIIString();
-        }
-        return strings;
-    }
-
     /**
      * Creates a Peer Connection.
      *
@@ -112,37 +127,92 @@ public class PeerConnection implements Closeable {
      * @return the peer connection
      */
     public static PeerConnection createPeer(PeerConnectionConfiguration config, Executor executor) {
-        String proxyServer = null;
-        if (config.proxyServer != null) {
-            proxyServer = config.proxyServer.toASCIIString();
-        }
-        String bindAddress = null;
-        if (config.bindAddress != null) {
-            bindAddress = config.bindAddress.toString();
+        return createPeer(config, executor, null);
+    }
+
+    /**
+     * Creates a Peer Connection pinned to one of the loops of the group, all callbacks of the peer and its channels run on that loop.
+     *
+     * Remember to {@link #close()} when done.
+     *
+     * @param config the peer configuration
+     * @param group  the event loops
+     * @return the peer connection
+     */
+    public static PeerConnection createPeer(PeerConnectionConfiguration config, EventLoopGroup group) {
+        return createPeer(config, null, group);
+    }
+
+    private static PeerConnection createPeer(PeerConnectionConfiguration config, @Nullable Executor executor, @Nullable EventLoopGroup group) {
+        final int result = rtcCreatePeerConnection(config.nativeConfiguration());
+        // the native configuration is freed once the configuration is unreachable
+        Reference.reachabilityFence(config);
+
+        final int peerHandle = wrapError("rtcCreatePeerConnection", result);
+        final PeerConnection peer;
+        if (group != null) {
+            final ScheduledExecutorService loop = group.nextLoop();
+            peer = new PeerConnection(peerHandle, config, loop, loop);
+        } else {
+            peer = new PeerConnection(peerHandle, config, Objects.requireNonNull(executor, "executor"), null);
         }
-        int result = rtcCreatePeerConnection(
-                iceUrisToStrings(config.iceServers),
-                proxyServer,
-                bindAddress,
-                config.certificateType.state,
-                config.iceTransportPolicy.state,
-                config.enableIceTcp,
-                config.enableIceUdpMux,
-                config.disableAutoNegotiation,
-                config.forceMediaTransport,
-                config.portRangeBegin,
-                config.portRangeEnd,
-                config.mtu,
-                config.maxMessageSize);
-
-        final PeerConnection peer = new PeerConnection(wrapError("rtcCreatePeerConnection", result), executor);
         setupPeerConnectionListener(peer.peerHandle, peer.listener);
+        if (peer.eventRing != null) {
+            peer.eventRing.register(peer);
+            wrapError("setupEventRing", setupEventRing(peer.peerHandle, peer.eventRing.memory));
+        }
 
         return peer;
     }
 
+    /**
+     * Returns the event loop this peer is pinned to, if it was created with an {@link EventLoopGroup}. Tasks scheduled on it never run
+     * concurrently with the callbacks of this peer and its channels.
+     *
+     * @return the event loop
+     */
+    public Optional<ScheduledExecutorService> eventLoop() {
+        return Optional.ofNullable(eventLoop);
+    }
+
+    /**
+     * Returns the number of events dropped because the dispatch queue was full, see
+     * {@link PeerConnectionConfiguration#withDispatchQueue(int, PeerConnectionConfiguration.OverloadPolicy)}.
+     *
+     * @return the number of dropped events
+     */
+    public long droppedEvents() {
+        return dispatchQueue == null ? 0 : dispatchQueue.droppedEvents();
+    }
+
+    /**
+     * Returns the number of events that were replaced by a newer event of the same kind before being delivered.
+     *
+     * @return the number of coalesced events
+     */
+    public long coalescedEvents() {
+        return dispatchQueue == null ? 0 : dispatchQueue.coalescedEvents();
+    }
+
+    /**
+     * Returns the number of events that were queued beyond the capacity of the dispatch queue, because waiting for room could have
+     * deadlocked or stalled libdatachannel, see {@link PeerConnectionConfiguration.OverloadPolicy}.
+     *
+     * @return the number of overflowed events
+     */
+    public long overflowedEvents() {
+        return dispatchQueue == null ? 0 : dispatchQueue.overflowedEvents();
+    }
+
     public static PeerConnection createPeer(PeerConnectionConfiguration config) {
-        return createPeer(config, Runnable::run);
+        return createPeer(config, INLINE_EXECUTOR);
+    }
+
+    /**
+     * Returns the executor for the handlers of a new channel or track, its own strand if dispatch is serial.
+     */
+    Executor childExecutor() {
+        return serialDispatch ? new SerialExecutor(executor) : executor;
     }
 
     @Nullable
@@ -151,7 +221,12 @@ public class PeerConnection implements Closeable {
     }
 
     DataChannel newChannel(int channelHandle) {
-        return channels.computeIfAbsent(channelHandle, h -> new DataChannel(this, h, executor));
+        return channels.computeIfAbsent(channelHandle, h -> {
+            final DataChannel channel = new DataChannel(this, h, childExecutor());
+            // let native callbacks of the channel call into it directly instead of looking it up by handle
+            wrapError("setupDataChannelListener", setupDataChannelListener(h, channel));
+            return channel;
+        });
     }
 
     void dropChannelState(int channelHandle) {
@@ -159,10 +234,14 @@ public class PeerConnection implements Closeable {
     }
 
     Track newTrack(int trackHandle) {
-        return tracks.computeIfAbsent(trackHandle, h -> new Track(this, h));
+        return tracks.computeIfAbsent(trackHandle, h -> {
+            final Track track = new Track(this, h, childExecutor());
+            wrapError("setupTrackListener", setupTrackListener(h, track));
+            return track;
+        });
     }
 
-    public void dropTrackState(int trackHandle) {
+    void dropTrackState(int trackHandle) {
         tracks.remove(trackHandle);
     }
 
@@ -178,7 +257,15 @@ public class PeerConnection implements Closeable {
         } catch (Exception e) {
             LOGGER.warn("Failed to close channels of peer connection", e);
         }
+        try {
+            closeTracks();
+        } catch (Exception e) {
+            LOGGER.warn("Failed to close tracks of peer connection", e);
+        }
         cleanable.clean();
+        if (eventRing != null) {
+            eventRing.deregister(this);
+        }
         onLocalDescription.close();
         onLocalCandidate.close();
         onStateChange.close();
@@ -201,6 +288,15 @@ public class PeerConnection implements Closeable {
         }
     }
 
+    /**
+     * Closes all Tracks.
+     */
+    public void closeTracks() {
+        for (final Track track : new ArrayList<>(this.tracks.values())) {
+            track.close();
+        }
+    }
+
     /**
      * Initiates the handshake process.
      * <p>
@@ -375,21 +471,20 @@ public class PeerConnection implements Closeable {
         int stream = init.stream().orElse(0);
         boolean manualStream = init.stream().isPresent();
         final int channelHandle = wrapError("rtcCreateDataChannelEx", rtcCreateDataChannelEx(peerHandle, label, reliability.isUnordered(), reliability.isUnreliable(), reliability.maxPacketLifeTime().toMillis(), reliability.maxRetransmits(), init.protocol().orElse(null), init.isNegotiated(), stream, manualStream));
-        final DataChannel channel = new DataChannel(this, channelHandle, executor);
-        this.channels.put(channelHandle, channel);
-        return channel;
+        return newChannel(channelHandle);
     }
 
     // Adds a new Track on a Peer Connection. The Peer Connection does not need to be connected, however, the Track will be open only when the Peer Connection is connected.
     // sdp: a null-terminated string specifying the corresponding media SDP. It must start with a m-line and include a mid parameter.
     public Track addTrack(String sdp) {
         final int trackHandle = wrapError("rtcAddTrack", rtcAddTrack(peerHandle, sdp));
-        return new Track(this, trackHandle);
+        return newTrack(trackHandle);
     }
 
     public Track addTrack(TrackInit init) {
-        final int trackHandle = wrapError("rtcAddTrackEx", rtcAddTrackEx(peerHandle, init.direction().direction, init.codec().codec));
-        return new Track(this, trackHandle);
+        final int trackHandle = wrapError("rtcAddTrackEx", rtcAddTrackEx(peerHandle, init.direction().direction, init.codec().codec, init.payloadType(), init.ssrc(),
+                init.mid().orElse(null), init.name().orElse(null), init.msid().orElse(null), init.trackId().orElse(null), init.profile().orElse(null)));
+        return newTrack(trackHandle);
     }
 
     @Override
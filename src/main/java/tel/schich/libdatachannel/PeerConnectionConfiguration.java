@@ -2,9 +2,13 @@ package tel.schich.libdatachannel;
 
 import org.eclipse.jdt.annotation.Nullable;
 
+import static tel.schich.libdatachannel.LibDataChannelNative.compileConfiguration;
+import static tel.schich.libdatachannel.LibDataChannelNative.freeConfiguration;
+
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -26,7 +30,12 @@ public class PeerConnectionConfiguration {
             (short) 0,
             (short) 0,
             AUTO_MTU,
-            0);
+            0,
+            null,
+            null,
+            false,
+            0,
+            OverloadPolicy.BLOCK);
 
     final List<URI> iceServers;
     @Nullable
@@ -43,8 +52,16 @@ public class PeerConnectionConfiguration {
     final short portRangeEnd;
     final int mtu;
     final int maxMessageSize;
+    @Nullable
+    final MessageBufferPool messageBufferPool;
+    @Nullable
+    final EventRing eventRing;
+    final boolean serialDispatch;
+    final int dispatchQueueCapacity;
+    final OverloadPolicy overloadPolicy;
+    private volatile long nativeConfiguration;
 
-    private PeerConnectionConfiguration(List<URI> iceServers, @Nullable URI proxyServer, @Nullable InetAddress bindAddress, CertificateType certificateType, IceTransportPolicy iceTransportPolicy, boolean enableIceTcp, boolean enableIceUdpMux, boolean disableAutoNegotiation, boolean forceMediaTransport, short portRangeBegin, short portRangeEnd, int mtu, int maxMessageSize) {
+    private PeerConnectionConfiguration(List<URI> iceServers, @Nullable URI proxyServer, @Nullable InetAddress bindAddress, CertificateType certificateType, IceTransportPolicy iceTransportPolicy, boolean enableIceTcp, boolean enableIceUdpMux, boolean disableAutoNegotiation, boolean forceMediaTransport, short portRangeBegin, short portRangeEnd, int mtu, int maxMessageSize, @Nullable MessageBufferPool messageBufferPool, @Nullable EventRing eventRing, boolean serialDispatch, int dispatchQueueCapacity, OverloadPolicy overloadPolicy) {
         this.iceServers = iceServers;
         this.proxyServer = proxyServer;
         this.bindAddress = bindAddress;
@@ -58,6 +75,59 @@ public class PeerConnectionConfiguration {
         this.portRangeEnd = portRangeEnd;
         this.mtu = mtu;
         this.maxMessageSize = maxMessageSize;
+        this.messageBufferPool = messageBufferPool;
+        this.eventRing = eventRing;
+        this.serialDispatch = serialDispatch;
+        this.dispatchQueueCapacity = dispatchQueueCapacity;
+        this.overloadPolicy = overloadPolicy;
+        this.nativeConfiguration = 0;
+    }
+
+    /**
+     * Returns the native rtcConfiguration of this configuration, converting it on first use. Configurations are immutable, so all peers created
+     * from the same instance share the converted struct, which is freed once this instance becomes unreachable. Callers must keep this
+     * instance reachable while using the returned address.
+     */
+    long nativeConfiguration() {
+        long configuration = nativeConfiguration;
+        if (configuration != 0) {
+            return configuration;
+        }
+        synchronized (this) {
+            configuration = nativeConfiguration;
+            if (configuration == 0) {
+                configuration = compileConfiguration(
+                        iceUrisToStrings(iceServers),
+                        proxyServer == null ? null : proxyServer.toASCIIString(),
+                        bindAddress == null ? null : bindAddress.toString(),
+                        certificateType.state,
+                        iceTransportPolicy.state,
+                        enableIceTcp,
+                        enableIceUdpMux,
+                        disableAutoNegotiation,
+                        forceMediaTransport,
+                        portRangeBegin,
+                        portRangeEnd,
+                        mtu,
+                        maxMessageSize);
+                final long address = configuration;
+                LibDataChannel.CLEANER.register(this, () -> freeConfiguration(address));
+                nativeConfiguration = configuration;
+            }
+            return configuration;
+        }
+    }
+
+    private static String @Nullable [] iceUrisToStrings(List<URI> uris) {
+        if (uris.isEmpty()) {
+            return null;
+        }
+        int index = 0;
+        String[] strings = new String[uris.size()];
+        for (URI server : uris) {
+            strings[index++] = server.toASCIIString();
+        }
+        return strings;
     }
 
     /**
@@ -66,7 +136,7 @@ public class PeerConnectionConfiguration {
      * Each entry in iceServers must match the format [("stun"|"turn"|"turns") (":"|"://")][username ":" password "@"]hostname[":" port]["?transport=" ("udp"|"tcp"|"tls")]. The default scheme is STUN, the default port is 3478 (5349 over TLS), and the default transport is UDP. For instance, a STUN server URI could be mystunserver.org, and a TURN server URI could be turn:myuser:12345678@turnserver.org. Note transports TCP and TLS are only available for a TURN server with libnice as ICE backend and govern only the TURN control connection, meaning relaying is always performed over UDP.
      */
     public PeerConnectionConfiguration withIceServers(Collection<URI> iceServers) {
-        return new PeerConnectionConfiguration(new ArrayList<>(iceServers), proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(new ArrayList<>(iceServers), proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public List<URI> iceServers() {
@@ -81,7 +151,7 @@ public class PeerConnectionConfiguration {
      * If the username or password of an URI contains reserved special characters, they must be percent-encoded. In particular, ":" must be encoded as "%3A" and "@" must by encoded as "%40".
      */
     public PeerConnectionConfiguration withProxyServer(URI proxy) {
-        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public Optional<URI> proxyServer() {
@@ -92,7 +162,7 @@ public class PeerConnectionConfiguration {
      * (optional): if non-NULL, bind only to the given local address (ignored with libnice as ICE backend)
      */
     public PeerConnectionConfiguration withBindAddress(InetAddress bindAddress) {
-        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public Optional<InetAddress> bindAddress() {
@@ -101,9 +171,11 @@ public class PeerConnectionConfiguration {
 
     /**
      * (optional): certificate type, either RTC_CERTIFICATE_ECDSA or RTC_CERTIFICATE_RSA (0 or RTC_CERTIFICATE_DEFAULT if default)
+     *
+     * @see LibDataChannel#prepareCertificate(CertificateType)
      */
     public PeerConnectionConfiguration withCertificateType(CertificateType certificateType) {
-        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public CertificateType certificateType() {
@@ -115,7 +187,7 @@ public class PeerConnectionConfiguration {
      * RTC_TRANSPORT_POLICY_ALL if default)
      */
     public PeerConnectionConfiguration iceTransportPolicy(IceTransportPolicy policy) {
-        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public IceTransportPolicy iceTransportPolicy() {
@@ -126,7 +198,7 @@ public class PeerConnectionConfiguration {
      * if true, generate TCP candidates for ICE (ignored with libjuice as ICE backend)
      */
     public PeerConnectionConfiguration withEnableIceTcp(boolean enableIceTcp) {
-        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public boolean enableIceTcp() {
@@ -138,7 +210,7 @@ public class PeerConnectionConfiguration {
      * backend)
      */
     public PeerConnectionConfiguration withEnableIceUdpMux(boolean enableIceUdpMux) {
-        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public boolean enableIceUdpMux() {
@@ -149,7 +221,7 @@ public class PeerConnectionConfiguration {
      * if true, the user is responsible for calling rtcSetLocalDescription after creating a Data Channel and after setting the remote description
      */
     public PeerConnectionConfiguration withDisableAutoNegotiation(boolean disableAutoNegotiation) {
-        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public boolean disableAutoNegotiation() {
@@ -160,7 +232,7 @@ public class PeerConnectionConfiguration {
      * if true, the connection allocates the SRTP media transport even if no tracks are present (necessary to add tracks during later renegotiation)
      */
     public PeerConnectionConfiguration withForceMediaTransport(boolean forceMediaTransport) {
-        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public boolean forceMediaTransport() {
@@ -172,7 +244,7 @@ public class PeerConnectionConfiguration {
      * (optional): first port (included) of the allowed local port range (0 if unused)
      */
     public PeerConnectionConfiguration withPortRangeBegin(short portRangeBegin) {
-        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public short portRangeBegin() {
@@ -184,7 +256,7 @@ public class PeerConnectionConfiguration {
      * (optional): last port (included) of the allowed local port (0 if unused)
      */
     public PeerConnectionConfiguration withPortRangeEnd(short portRangeEnd) {
-        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public short portRangeEnd() {
@@ -195,7 +267,7 @@ public class PeerConnectionConfiguration {
      * (optional): manually set the Maximum Transfer Unit (MTU) for the connection (0 if automatic)
      */
     public PeerConnectionConfiguration withMtu(int mtu) {
-        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public int mtu() {
@@ -206,13 +278,97 @@ public class PeerConnectionConfiguration {
      * (optional): manually set the local maximum message size for Data Channels (0 if default)
      */
     public PeerConnectionConfiguration withMaxMessageSize(int maxMessageSize) {
-        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize);
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
     }
 
     public int maxMessageSize() {
         return maxMessageSize;
     }
 
+    /**
+     * (optional): if set, incoming messages are copied into buffers from this pool before being dispatched, so they stay valid when handlers
+     * run on an asynchronous executor. The buffer is returned to the pool once all handlers returned. Without a pool, messages for asynchronous
+     * executors are copied into a new heap buffer each. Handlers on {@link PeerConnection#INLINE_EXECUTOR} receive the native message without
+     * any copy, so the pool is not used for them.
+     */
+    public PeerConnectionConfiguration withMessageBufferPool(@Nullable MessageBufferPool messageBufferPool) {
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
+    }
+
+    public Optional<MessageBufferPool> messageBufferPool() {
+        return Optional.ofNullable(messageBufferPool);
+    }
+
+    /**
+     * (optional): if set, native callbacks write their events into this ring instead of calling into the JVM, and the ring's consumer thread
+     * dispatches them.
+     */
+    public PeerConnectionConfiguration withEventRing(@Nullable EventRing eventRing) {
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
+    }
+
+    public Optional<EventRing> eventRing() {
+        return Optional.ofNullable(eventRing);
+    }
+
+    /**
+     * if true, the events of each data channel and the events of the peer connection itself are delivered in order and one at a time, while
+     * different channels may still run in parallel on the executor (ignored with {@link PeerConnection#INLINE_EXECUTOR})
+     */
+    public PeerConnectionConfiguration withSerialDispatch(boolean serialDispatch) {
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
+    }
+
+    public boolean serialDispatch() {
+        return serialDispatch;
+    }
+
+    /**
+     * (optional): if positive, at most this many events of the peer connection and its channels are pending on the executor, further events
+     * are handled according to the overload policy (ignored with {@link PeerConnection#INLINE_EXECUTOR})
+     */
+    public PeerConnectionConfiguration withDispatchQueue(int dispatchQueueCapacity, OverloadPolicy overloadPolicy) {
+        return new PeerConnectionConfiguration(iceServers, proxyServer, bindAddress, certificateType, iceTransportPolicy, enableIceTcp, enableIceUdpMux, disableAutoNegotiation, forceMediaTransport, portRangeBegin, portRangeEnd, mtu, maxMessageSize, messageBufferPool, eventRing, serialDispatch, dispatchQueueCapacity, overloadPolicy);
+    }
+
+    public int dispatchQueueCapacity() {
+        return dispatchQueueCapacity;
+    }
+
+    public OverloadPolicy overloadPolicy() {
+        return overloadPolicy;
+    }
+
+    /**
+     * Builds an ICE server URI with credentials, e.g. for a TURN server. The username and password are percent-encoded as required by
+     * libdatachannel, so they may contain any character.
+     *
+     * @param scheme   "stun", "turn" or "turns"
+     * @param hostname the hostname of the server
+     * @param port     the port of the server
+     * @param username the username
+     * @param password the password
+     * @return the URI
+     */
+    public static URI iceServer(String scheme, String hostname, int port, String username, String password) {
+        return URI.create(scheme + ":" + percentEncode(username) + ":" + percentEncode(password) + "@" + hostname + ":" + port);
+    }
+
+    private static String percentEncode(String value) {
+        final StringBuilder out = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            final char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~') {
+                out.append(c);
+            } else {
+                out.append('%');
+                out.append(Character.toUpperCase(Character.forDigit((c >> 4) & 0xF, 16)));
+                out.append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            }
+        }
+        return out.toString();
+    }
+
     public static Collection<URI> uris(String... uris) {
         try {
             List<URI> out = new ArrayList<>(uris.length);
@@ -246,6 +402,33 @@ public class PeerConnectionConfiguration {
         }
     }
 
+    /**
+     * What happens to an event when the dispatch queue is full, see {@link #withDispatchQueue(int, OverloadPolicy)}.
+     */
+    public enum OverloadPolicy {
+        /**
+         * The native callback blocks until the executor caught up, which applies backpressure to libdatachannel. It waits at most 100 ms, as
+         * the blocked thread also serves other peers, and never when the callback is triggered from a handler of the same peer connection,
+         * which would deadlock. The event is queued beyond the capacity afterwards, see {@link PeerConnection#overflowedEvents()}.
+         */
+        BLOCK,
+        /**
+         * A new message is dropped. Other events are never dropped, they are queued beyond the capacity without blocking.
+         */
+        DROP_NEWEST,
+        /**
+         * The oldest pending message is dropped to make room for a new message. Other events are never dropped, they are queued beyond the
+         * capacity without blocking.
+         */
+        DROP_OLDEST,
+        /**
+         * Buffered amount low, available and state change events replace a pending event of the same kind, so only the latest one is
+         * delivered. This also applies while the queue is not full. Other events block like {@link #BLOCK} when the queue is full.
+         */
+        COALESCE,
+        ;
+    }
+
     public enum IceTransportPolicy {
         RTC_TRANSPORT_POLICY_ALL(0),
         RTC_TRANSPORT_POLICY_RELAY(1),
@@ -1,12 +1,11 @@
 package tel.schich.libdatachannel;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tel.schich.jniaccess.JNIAccess;
 
 import java.nio.ByteBuffer;
-import java.util.function.BiConsumer;
-import java.util.function.Function;
 
 class PeerConnectionListener {
     private static final Logger LOGGER = LoggerFactory.getLogger(PeerConnectionListener.class);
@@ -39,7 +38,7 @@ class PeerConnectionListener {
             LOGGER.error("Unknown state {}!", state);
             return;
         }
-        peer.onStateChange.invoke(h -> h.handleChange(peer, mappedState));
+        peer.onStateChange.invoke(PeerConnectionCallback.StateChange::handleChange, peer, mappedState);
     }
 
     @JNIAccess
@@ -49,7 +48,7 @@ class PeerConnectionListener {
             LOGGER.error("Unknown ICE state {}!", iceState);
             return;
         }
-        peer.onIceStateChange.invoke(h -> h.handleChange(peer, mappedState));
+        peer.onIceStateChange.invoke(PeerConnectionCallback.IceStateChange::handleChange, peer, mappedState);
     }
 
     @JNIAccess
@@ -59,7 +58,7 @@ class PeerConnectionListener {
             LOGGER.error("Unknown gathering state {}!", gatheringState);
             return;
         }
-        peer.onGatheringStateChange.invoke(h -> h.handleChange(peer, mappedState));
+        peer.onGatheringStateChange.invoke(PeerConnectionCallback.GatheringStateChange::handleChange, peer, mappedState);
     }
 
     @JNIAccess
@@ -69,62 +68,83 @@ class PeerConnectionListener {
             LOGGER.error("Unknown signaling state {}!", signalingState);
             return;
         }
-        peer.onSignalingStateChange.invoke(h -> h.handleChange(peer, mappedState));
+        peer.onSignalingStateChange.invoke(PeerConnectionCallback.SignalingStateChange::handleChange, peer, mappedState);
     }
 
     @JNIAccess
     void onDataChannel(int channelHandle) {
         final DataChannel channel = peer.newChannel(channelHandle);
-        peer.onDataChannel.invoke(h -> h.handleChannel(peer, channel));
+        peer.onDataChannel.invoke(PeerConnectionCallback.DataChannel::handleChannel, peer, channel);
     }
 
     @JNIAccess
     void onTrack(int trackHandle) {
         final Track state = peer.newTrack(trackHandle);
-        peer.onTrack.invoke(h -> h.handleTrack(peer, state));
+        peer.onTrack.invoke(PeerConnectionCallback.Track::handleTrack, peer, state);
     }
 
-    private <T> void invokeWithChannel(int handle, Function<DataChannel, EventListenerContainer<T>> listeners, BiConsumer<T, DataChannel> consumer) {
+    @Nullable
+    private DataChannel channel(int handle) {
         final DataChannel channel = peer.channel(handle);
         if (channel == null) {
             LOGGER.warn("Received event for unknown data channel {}!", handle);
-            return;
         }
-        listeners.apply(channel).invoke(h -> consumer.accept(h, channel));
+        return channel;
     }
 
     @JNIAccess
     void onChannelOpen(int channelHandle) {
-        invokeWithChannel(channelHandle, s -> s.onOpen, DataChannelCallback.Open::onOpen);
+        final DataChannel channel = channel(channelHandle);
+        if (channel != null) {
+            channel.onNativeOpen();
+        }
     }
 
     @JNIAccess
     void onChannelClosed(int channelHandle) {
-        invokeWithChannel(channelHandle, s -> s.onClosed, DataChannelCallback.Closed::onClosed);
+        final DataChannel channel = channel(channelHandle);
+        if (channel != null) {
+            channel.onNativeClosed();
+        }
     }
 
     @JNIAccess
     void onChannelError(int channelHandle, String error) {
-        invokeWithChannel(channelHandle, s -> s.onError, (h, ch) -> h.onError(ch, error));
+        final DataChannel channel = channel(channelHandle);
+        if (channel != null) {
+            channel.onNativeError(error);
+        }
     }
 
     @JNIAccess
-    void onChannelTextMessage(int channelHandle, String message) {
-        invokeWithChannel(channelHandle, s -> s.onMessage, (h, ch) -> h.onText(ch, message));
+    void onChannelTextMessage(int channelHandle, ByteBuffer message) {
+        final DataChannel channel = channel(channelHandle);
+        if (channel != null) {
+            channel.onNativeTextMessage(message);
+        }
     }
 
     @JNIAccess
     void onChannelBinaryMessage(int channelHandle, ByteBuffer message) {
-        invokeWithChannel(channelHandle, s -> s.onMessage, (h, ch) -> h.onBinary(ch, message));
+        final DataChannel channel = channel(channelHandle);
+        if (channel != null) {
+            channel.onNativeBinaryMessage(message);
+        }
     }
 
     @JNIAccess
     void onChannelBufferedAmountLow(int channelHandle) {
-        invokeWithChannel(channelHandle, s -> s.onBufferedAmountLow, DataChannelCallback.BufferedAmountLow::onBufferedAmountLow);
+        final DataChannel channel = channel(channelHandle);
+        if (channel != null) {
+            channel.onNativeBufferedAmountLow();
+        }
     }
 
     @JNIAccess
     void onChannelAvailable(int channelHandle) {
-        invokeWithChannel(channelHandle, s -> s.onAvailable, DataChannelCallback.Available::onAvailable);
+        final DataChannel channel = channel(channelHandle);
+        if (channel != null) {
+            channel.onNativeAvailable();
+        }
     }
 }
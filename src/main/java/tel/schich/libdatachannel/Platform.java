@@ -1,13 +1,30 @@
 package tel.schich.libdatachannel;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.jar.JarEntry;
 
 class Platform {
     private static final Logger LOGGER = LoggerFactory.getLogger(Platform.class);
@@ -16,6 +33,8 @@ class Platform {
     private static final String PATH_PROP_PREFIX = "libdatachannel.native.";
     private static final String PATH_PROP_FS_PATH = ".path";
     private static final String PATH_PROP_CLASS_PATH = ".classpath";
+    private static final String PATH_PROP_CACHE_DIR = ".cachedir";
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
 
     /**
      * Checks if the currently running OS is Linux
@@ -103,40 +122,185 @@ class Platform {
 
         String explicitLibraryClassPath = System.getProperty(classPathPropertyNameForLibrary(name));
         final String libName = libraryFilename(name);
+        final String sourceLibPath;
         if (explicitLibraryClassPath != null) {
             LOGGER.trace("Loading native library {} from explicit classpath at {}", name, explicitLibraryClassPath);
+            sourceLibPath = explicitLibraryClassPath;
+        } else {
+            sourceLibPath = LIB_PREFIX + "/" + libName;
+            LOGGER.trace("Loading native library {} from {}", name, sourceLibPath);
+        }
+
+        final Path cachedPath;
+        try {
+            cachedPath = extractToCache(name, libName, base, sourceLibPath);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to cache native library {}, extracting it to a temporary directory", name, e);
+            try {
+                loadFromTempDirectory(name, libName, readFromClassPath(name, base, sourceLibPath));
+            } catch (IOException ex) {
+                throw new LinkageError("Unable to load native library " + name + "!", ex);
+            }
+            return;
+        }
+        System.load(cachedPath.toString());
+    }
+
+    public static String cacheDirPropertyNameForLibrary(String name) {
+        return PATH_PROP_PREFIX + name.toLowerCase() + PATH_PROP_CACHE_DIR;
+    }
+
+    private static Path cacheDirectory(String name) {
+        final String explicitCacheDir = System.getProperty(cacheDirPropertyNameForLibrary(name));
+        if (explicitCacheDir != null) {
+            return Paths.get(explicitCacheDir);
+        }
+        return Paths.get(System.getProperty("java.io.tmpdir"), name + "-cache-" + System.getProperty("user.name"));
+    }
+
+    /**
+     * Extracts the library into a directory named by a key of its content, unless an earlier process already did so. The file is written to a
+     * temporary name first and atomically moved into place, so concurrently starting processes never load a partial file.
+     * <p>
+     * The key is the CRC-32 and size recorded in the jar's directory, so a warm start neither inflates nor hashes the library. Only libraries
+     * outside a jar are read and keyed by their SHA-256 hash.
+     * </p>
+     * <p>
+     * The cache usually lives in the shared temporary directory, so its directories must be private to the current user, otherwise another
+     * user could replace the library before it is loaded. Only the current user can write there, so a cached file of the expected size is
+     * trusted.
+     * </p>
+     */
+    private static Path extractToCache(String name, String libName, Class<?> base, String classPath) throws IOException {
+        byte[] library = null;
+        final String key;
+        final long size;
+        final JarEntry entry = jarEntry(base, classPath);
+        if (entry != null && entry.getCrc() != -1 && entry.getSize() != -1) {
+            key = String.format("%08x-%d", entry.getCrc(), entry.getSize());
+            size = entry.getSize();
+        } else {
+            library = readFromClassPath(name, base, classPath);
+            key = sha256(library);
+            size = library.length;
+        }
+
+        final Path root = cacheDirectory(name).toAbsolutePath();
+        final Path directory = root.resolve(key);
+        final Path libPath = directory.resolve(libName);
+        final Path parent = root.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        ensurePrivateDirectory(root);
+        ensurePrivateDirectory(directory);
+        if (isCached(libPath, size)) {
+            LOGGER.trace("Reusing cached native library {} at {}", name, libPath);
+            return libPath;
+        }
+
+        if (library == null) {
+            library = readFromClassPath(name, base, classPath);
+            if (library.length != size) {
+                throw new IOException("The size of " + classPath + " does not match its jar entry!");
+            }
+        }
+        final Path tempPath = Files.createTempFile(directory, libName, ".tmp");
+        try {
+            Files.write(tempPath, library);
             try {
-                final Path tempDirectory = Files.createTempDirectory(name + "-");
-                final Path libPath = tempDirectory.resolve(libName);
-                loadFromClassPath(name, base, explicitLibraryClassPath, libPath);
-                return;
+                Files.move(tempPath, libPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, libPath, StandardCopyOption.REPLACE_EXISTING);
             } catch (IOException e) {
-                throw new LinkageError("Unable to load native library " + name + "!", e);
+                // another process may have won the race, its file is just as good if it is complete
+                if (!isCached(libPath, size)) {
+                    throw e;
+                }
             }
+        } finally {
+            Files.deleteIfExists(tempPath);
         }
+        LOGGER.trace("Cached native library {} at {}", name, libPath);
+        return libPath;
+    }
 
-        final String sourceLibPath = LIB_PREFIX + "/" + libName;
-        LOGGER.trace("Loading native library {} from {}", name, sourceLibPath);
+    @Nullable
+    private static JarEntry jarEntry(Class<?> base, String classPath) throws IOException {
+        final URL resource = base.getResource(classPath);
+        if (resource == null) {
+            return null;
+        }
+        final URLConnection connection = resource.openConnection();
+        if (!(connection instanceof JarURLConnection)) {
+            return null;
+        }
+        return ((JarURLConnection) connection).getJarEntry();
+    }
 
+    private static boolean isCached(Path libPath, long size) throws IOException {
+        return Files.isRegularFile(libPath, LinkOption.NOFOLLOW_LINKS) && Files.size(libPath) == size;
+    }
+
+    /**
+     * Creates the directory accessible only by the current user, or verifies that an existing one is owned by the current user and not
+     * accessible by anyone else. Only applies to file systems with POSIX permissions.
+     */
+    private static void ensurePrivateDirectory(Path directory) throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(directory);
+            return;
+        }
+        try {
+            Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        } catch (FileAlreadyExistsException e) {
+            // verified below
+        }
+        final PosixFileAttributes attributes = Files.readAttributes(directory, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        final UserPrincipal user = FileSystems.getDefault().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+        if (!attributes.isDirectory() || !attributes.owner().equals(user)) {
+            throw new IOException(directory + " is not a directory owned by " + user.getName() + "!");
+        }
+        if (!attributes.permissions().equals(OWNER_ONLY)) {
+            // the umask may have changed the permissions of a new directory, or an older version created it
+            Files.setPosixFilePermissions(directory, OWNER_ONLY);
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new LinkageError("SHA-256 is not available!", e);
+        }
+        final StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest(data)) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void loadFromTempDirectory(String name, String libName, byte[] library) {
         try {
             final Path tempDirectory = Files.createTempDirectory(name + "-");
             final Path libPath = tempDirectory.resolve(libName);
-            loadFromClassPath(name, base, sourceLibPath, libPath);
+            Files.write(libPath, library);
+            System.load(libPath.toString());
+            libPath.toFile().deleteOnExit();
+            tempDirectory.toFile().deleteOnExit();
         } catch (IOException e) {
             throw new LinkageError("Unable to load native library " + name + "!", e);
         }
     }
 
-    private static void loadFromClassPath(String name, Class<?> base, String classPath, Path fsPath) throws IOException {
+    private static byte[] readFromClassPath(String name, Class<?> base, String classPath) throws IOException {
         try (InputStream libStream = base.getResourceAsStream(classPath)) {
             if (libStream == null) {
                 throw new LinkageError("Failed to load the native library " + name + ": " + classPath + " not found.");
             }
-
-            Files.copy(libStream, fsPath, StandardCopyOption.REPLACE_EXISTING);
-
-            System.load(fsPath.toString());
-            fsPath.toFile().deleteOnExit();
+            return libStream.readAllBytes();
         }
     }
 
@@ -0,0 +1,200 @@
+package tel.schich.libdatachannel;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * The global SCTP transport settings of libdatachannel, applied with {@link LibDataChannel#setSctpSettings(SctpSettings)}.
+ * <p>
+ * A value of 0 leaves the respective setting at libdatachannel's optimized default. The default buffer sizes limit the throughput of a single
+ * association on paths with a high bandwidth-delay product, raising them is usually the first thing to tune.
+ * </p>
+ *
+ * @see <a href="https://github.com/paullouisageneau/libdatachannel/blob/master/DOC.md#rtcsetsctpsettings">Documentation</a>
+ */
+public class SctpSettings {
+    public static final SctpSettings DEFAULT = new SctpSettings(0, 0, 0, 0, 0, CongestionControl.DEFAULT, 0, 0, 0, 0, 0, 0);
+
+    final int recvBufferSize;
+    final int sendBufferSize;
+    final int maxChunksOnQueue;
+    final int initialCongestionWindow;
+    final int maxBurst;
+    final CongestionControl congestionControl;
+    final int delayedSackTimeMs;
+    final int minRetransmitTimeoutMs;
+    final int maxRetransmitTimeoutMs;
+    final int initialRetransmitTimeoutMs;
+    final int maxRetransmitAttempts;
+    final int heartbeatIntervalMs;
+
+    private SctpSettings(int recvBufferSize, int sendBufferSize, int maxChunksOnQueue, int initialCongestionWindow, int maxBurst, CongestionControl congestionControl, int delayedSackTimeMs, int minRetransmitTimeoutMs, int maxRetransmitTimeoutMs, int initialRetransmitTimeoutMs, int maxRetransmitAttempts, int heartbeatIntervalMs) {
+        this.recvBufferSize = recvBufferSize;
+        this.sendBufferSize = sendBufferSize;
+        this.maxChunksOnQueue = maxChunksOnQueue;
+        this.initialCongestionWindow = initialCongestionWindow;
+        this.maxBurst = maxBurst;
+        this.congestionControl = congestionControl;
+        this.delayedSackTimeMs = delayedSackTimeMs;
+        this.minRetransmitTimeoutMs = minRetransmitTimeoutMs;
+        this.maxRetransmitTimeoutMs = maxRetransmitTimeoutMs;
+        this.initialRetransmitTimeoutMs = initialRetransmitTimeoutMs;
+        this.maxRetransmitAttempts = maxRetransmitAttempts;
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+    }
+
+    /**
+     * (optional): receive buffer size in bytes, 0 means optimized default
+     */
+    public SctpSettings withRecvBufferSize(int recvBufferSize) {
+        return new SctpSettings(recvBufferSize, sendBufferSize, maxChunksOnQueue, initialCongestionWindow, maxBurst, congestionControl, delayedSackTimeMs, minRetransmitTimeoutMs, maxRetransmitTimeoutMs, initialRetransmitTimeoutMs, maxRetransmitAttempts, heartbeatIntervalMs);
+    }
+
+    public int recvBufferSize() {
+        return recvBufferSize;
+    }
+
+    /**
+     * (optional): send buffer size in bytes, 0 means optimized default
+     */
+    public SctpSettings withSendBufferSize(int sendBufferSize) {
+        return new SctpSettings(recvBufferSize, sendBufferSize, maxChunksOnQueue, initialCongestionWindow, maxBurst, congestionControl, delayedSackTimeMs, minRetransmitTimeoutMs, maxRetransmitTimeoutMs, initialRetransmitTimeoutMs, maxRetransmitAttempts, heartbeatIntervalMs);
+    }
+
+    public int sendBufferSize() {
+        return sendBufferSize;
+    }
+
+    /**
+     * (optional): maximum number of chunks on the queue, 0 means optimized default
+     */
+    public SctpSettings withMaxChunksOnQueue(int maxChunksOnQueue) {
+        return new SctpSettings(recvBufferSize, sendBufferSize, maxChunksOnQueue, initialCongestionWindow, maxBurst, congestionControl, delayedSackTimeMs, minRetransmitTimeoutMs, maxRetransmitTimeoutMs, initialRetransmitTimeoutMs, maxRetransmitAttempts, heartbeatIntervalMs);
+    }
+
+    public int maxChunksOnQueue() {
+        return maxChunksOnQueue;
+    }
+
+    /**
+     * (optional): initial congestion window in MTUs, 0 means optimized default
+     */
+    public SctpSettings withInitialCongestionWindow(int initialCongestionWindow) {
+        return new SctpSettings(recvBufferSize, sendBufferSize, maxChunksOnQueue, initialCongestionWindow, maxBurst, congestionControl, delayedSackTimeMs, minRetransmitTimeoutMs, maxRetransmitTimeoutMs, initialRetransmitTimeoutMs, maxRetransmitAttempts, heartbeatIntervalMs);
+    }
+
+    public int initialCongestionWindow() {
+        return initialCongestionWindow;
+    }
+
+    /**
+     * (optional): maximum burst in MTUs, 0 means optimized default, a negative value disables the limit
+     */
+    public SctpSettings withMaxBurst(int maxBurst) {
+        return new SctpSettings(recvBufferSize, sendBufferSize, maxChunksOnQueue, initialCongestionWindow, maxBurst, congestionControl, delayedSackTimeMs, minRetransmitTimeoutMs, maxRetransmitTimeoutMs, initialRetransmitTimeoutMs, maxRetransmitAttempts, heartbeatIntervalMs);
+    }
+
+    public int maxBurst() {
+        return maxBurst;
+    }
+
+    /**
+     * (optional): congestion control module
+     */
+    public SctpSettings withCongestionControl(CongestionControl congestionControl) {
+        return new SctpSettings(recvBufferSize, sendBufferSize, maxChunksOnQueue, initialCongestionWindow, maxBurst, congestionControl, delayedSackTimeMs, minRetransmitTimeoutMs, maxRetransmitTimeoutMs, initialRetransmitTimeoutMs, maxRetransmitAttempts, heartbeatIntervalMs);
+    }
+
+    public CongestionControl congestionControl() {
+        return congestionControl;
+    }
+
+    /**
+     * (optional): delayed SACK time in milliseconds, 0 means optimized default, a negative value disables delayed SACKs
+     */
+    public SctpSettings withDelayedSackTimeMs(int delayedSackTimeMs) {
+        return new SctpSettings(recvBufferSize, sendBufferSize, maxChunksOnQueue, initialCongestionWindow, maxBurst, congestionControl, delayedSackTimeMs, minRetransmitTimeoutMs, maxRetransmitTimeoutMs, initialRetransmitTimeoutMs, maxRetransmitAttempts, heartbeatIntervalMs);
+    }
+
+    public int delayedSackTimeMs() {
+        return delayedSackTimeMs;
+    }
+
+    /**
+     * (optional): minimum retransmission timeout in milliseconds, 0 means optimized default
+     */
+    public SctpSettings withMinRetransmitTimeoutMs(int minRetransmitTimeoutMs) {
+        return new SctpSettings(recvBufferSize, sendBufferSize, maxChunksOnQueue, initialCongestionWindow, maxBurst, congestionControl, delayedSackTimeMs, minRetransmitTimeoutMs, maxRetransmitTimeoutMs, initialRetransmitTimeoutMs, maxRetransmitAttempts, heartbeatIntervalMs);
+    }
+
+    public int minRetransmitTimeoutMs() {
+        return minRetransmitTimeoutMs;
+    }
+
+    /**
+     * (optional): maximum retransmission timeout in milliseconds, 0 means optimized default
+     */
+    public SctpSettings withMaxRetransmitTimeoutMs(int maxRetransmitTimeoutMs) {
+        return new SctpSettings(recvBufferSize, sendBufferSize, maxChunksOnQueue, initialCongestionWindow, maxBurst, congestionControl, delayedSackTimeMs, minRetransmitTimeoutMs, maxRetransmitTimeoutMs, initialRetransmitTimeoutMs, maxRetransmitAttempts, heartbeatIntervalMs);
+    }
+
+    public int maxRetransmitTimeoutMs() {
+        return maxRetransmitTimeoutMs;
+    }
+
+    /**
+     * (optional): initial retransmission timeout in milliseconds, 0 means optimized default
+     */
+    public SctpSettings withInitialRetransmitTimeoutMs(int initialRetransmitTimeoutMs) {
+        return new SctpSettings(recvBufferSize, sendBufferSize, maxChunksOnQueue, initialCongestionWindow, maxBurst, congestionControl, delayedSackTimeMs, minRetransmitTimeoutMs, maxRetransmitTimeoutMs, initialRetransmitTimeoutMs, maxRetransmitAttempts, heartbeatIntervalMs);
+    }
+
+    public int initialRetransmitTimeoutMs() {
+        return initialRetransmitTimeoutMs;
+    }
+
+    /**
+     * (optional): maximum number of retransmissions, 0 means optimized default
+     */
+    public SctpSettings withMaxRetransmitAttempts(int maxRetransmitAttempts) {
+        return new SctpSettings(recvBufferSize, sendBufferSize, maxChunksOnQueue, initialCongestionWindow, maxBurst, congestionControl, delayedSackTimeMs, minRetransmitTimeoutMs, maxRetransmitTimeoutMs, initialRetransmitTimeoutMs, maxRetransmitAttempts, heartbeatIntervalMs);
+    }
+
+    public int maxRetransmitAttempts() {
+        return maxRetransmitAttempts;
+    }
+
+    /**
+     * (optional): heartbeat interval in milliseconds, 0 means optimized default
+     */
+    public SctpSettings withHeartbeatIntervalMs(int heartbeatIntervalMs) {
+        return new SctpSettings(recvBufferSize, sendBufferSize, maxChunksOnQueue, initialCongestionWindow, maxBurst, congestionControl, delayedSackTimeMs, minRetransmitTimeoutMs, maxRetransmitTimeoutMs, initialRetransmitTimeoutMs, maxRetransmitAttempts, heartbeatIntervalMs);
+    }
+
+    public int heartbeatIntervalMs() {
+        return heartbeatIntervalMs;
+    }
+
+    public enum CongestionControl {
+        RFC2581(0),
+        HSTCP(1),
+        HTCP(2),
+        RTCC(3),
+        ;
+
+        public static final CongestionControl DEFAULT = RFC2581;
+
+        private static final Map<Integer, CongestionControl> MAP = Util.mappedEnum(CongestionControl.values(), s -> s.module);
+        final int module;
+
+        CongestionControl(int module) {
+            this.module = module;
+        }
+
+        @Nullable
+        public static CongestionControl of(final int module) {
+            return MAP.get(module);
+        }
+    }
+}
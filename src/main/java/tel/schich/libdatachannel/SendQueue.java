@@ -0,0 +1,165 @@
+package tel.schich.libdatachannel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A bounded queue of outgoing messages for a {@link DataChannel}, see {@link DataChannel#sendAsync(ByteBuffer)}.
+ * <p>
+ * Messages are handed to libdatachannel while its buffered amount is below the high watermark. Once it is reached, messages are queued until
+ * the buffered amount dropped to the low watermark, which is requested as the channel's buffered amount low threshold.
+ * </p>
+ */
+final class SendQueue {
+    static final int DEFAULT_CAPACITY = 1024;
+    static final int DEFAULT_HIGH_WATERMARK = 1024 * 1024;
+    static final int DEFAULT_LOW_WATERMARK = 256 * 1024;
+
+    private final DataChannel channel;
+    private final ArrayDeque<Entry> queue;
+    private final DataChannelCallback.BufferedAmountLow drainer;
+    private int capacity;
+    private int highWatermark;
+    private int lowWatermark;
+    private boolean closed;
+
+    SendQueue(DataChannel channel) {
+        this.channel = channel;
+        this.queue = new ArrayDeque<>();
+        this.drainer = c -> drain();
+        this.capacity = DEFAULT_CAPACITY;
+        this.highWatermark = DEFAULT_HIGH_WATERMARK;
+        this.lowWatermark = DEFAULT_LOW_WATERMARK;
+        this.closed = false;
+        channel.requestBufferedAmountLowThreshold(lowWatermark);
+        channel.onBufferedAmountLow.register(drainer);
+    }
+
+    void configure(int capacity, int lowWatermark, int highWatermark) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive!");
+        }
+        if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+            throw new IllegalArgumentException("The high watermark must be greater than the low watermark!");
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            this.capacity = capacity;
+            this.highWatermark = highWatermark;
+            if (this.lowWatermark != lowWatermark) {
+                channel.requestBufferedAmountLowThreshold(lowWatermark);
+                channel.releaseBufferedAmountLowThreshold(this.lowWatermark);
+                this.lowWatermark = lowWatermark;
+            }
+        }
+        drain();
+    }
+
+    CompletableFuture<Void> enqueue(ByteBuffer data) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) {
+                future.completeExceptionally(new IllegalStateException("The channel is already closed!"));
+                return future;
+            }
+            if (queue.size() >= capacity) {
+                future.completeExceptionally(new IllegalStateException("The send queue is full!"));
+                return future;
+            }
+            queue.add(new Entry(data, future));
+        }
+        drain();
+        return future;
+    }
+
+    synchronized int size() {
+        return queue.size();
+    }
+
+    /**
+     * Sends queued messages until the high watermark is reached. The buffered amount is only queried again when the locally tracked amount
+     * reached the high watermark, so the buffered amount low callback is guaranteed to fire once the queue can make progress again.
+     * <p>
+     * The futures of the sent messages are completed after the lock was released, so continuations can call
+     * {@link DataChannel#sendAsync(ByteBuffer)} again without running inside of it.
+     * </p>
+     */
+    private void drain() {
+        ArrayList<Entry> done = null;
+        synchronized (this) {
+            if (queue.isEmpty() || closed) {
+                return;
+            }
+            int buffered = channel.bufferedAmount();
+            while (!queue.isEmpty()) {
+                if (buffered >= highWatermark) {
+                    buffered = channel.bufferedAmount();
+                    if (buffered >= highWatermark) {
+                        break;
+                    }
+                }
+                final Entry entry = queue.poll();
+                final int length = entry.data.remaining();
+                try {
+                    channel.sendMessage(entry.data);
+                    buffered += length;
+                } catch (RuntimeException e) {
+                    entry.error = e;
+                }
+                if (done == null) {
+                    done = new ArrayList<>();
+                }
+                done.add(entry);
+            }
+        }
+        if (done != null) {
+            for (Entry entry : done) {
+                entry.complete();
+            }
+        }
+    }
+
+    void close() {
+        final ArrayList<Entry> dropped;
+        final int threshold;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            dropped = new ArrayList<>(queue);
+            queue.clear();
+            threshold = lowWatermark;
+        }
+        channel.onBufferedAmountLow.deregister(drainer);
+        channel.releaseBufferedAmountLowThreshold(threshold);
+        final IllegalStateException e = new IllegalStateException("The channel was closed!");
+        for (Entry entry : dropped) {
+            entry.future.completeExceptionally(e);
+        }
+    }
+
+    private static final class Entry {
+        final ByteBuffer data;
+        final CompletableFuture<Void> future;
+        RuntimeException error;
+
+        Entry(ByteBuffer data, CompletableFuture<Void> future) {
+            this.data = data;
+            this.future = future;
+            this.error = null;
+        }
+
+        void complete() {
+            if (error == null) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package tel.schich.libdatachannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks one at a time and in submission order on a shared executor, see {@link PeerConnectionConfiguration#withSerialDispatch(boolean)}.
+ * <p>
+ * At most one drain task is submitted to the delegate at a time. It runs a bounded batch of tasks and resubmits itself if more are pending, so
+ * a busy strand does not starve the other strands sharing the delegate.
+ * </p>
+ */
+final class SerialExecutor implements Executor, Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SerialExecutor.class);
+    private static final int MAX_BATCH = 64;
+
+    private final Executor delegate;
+    private final Queue<Runnable> tasks;
+    private final AtomicBoolean scheduled;
+
+    SerialExecutor(Executor delegate) {
+        this.delegate = delegate;
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean(false);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (scheduled.compareAndSet(false, true)) {
+            delegate.execute(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        for (int i = 0; i < MAX_BATCH; i++) {
+            final Runnable task = tasks.poll();
+            if (task == null) {
+                break;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOGGER.error("Serial task failed!", t);
+            }
+        }
+        if (!tasks.isEmpty()) {
+            delegate.execute(this);
+            return;
+        }
+        scheduled.set(false);
+        // a task might have been added after the queue was found empty but before the flag was cleared
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            delegate.execute(this);
+        }
+    }
+}
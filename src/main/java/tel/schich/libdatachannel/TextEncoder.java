@@ -0,0 +1,114 @@
+package tel.schich.libdatachannel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes text messages into a reusable, thread-local direct buffer, null-terminated as libdatachannel expects them.
+ */
+final class TextEncoder {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+    private static final byte REPLACEMENT = '?';
+
+    private static final ThreadLocal<TextEncoder> LOCAL = ThreadLocal.withInitial(TextEncoder::new);
+
+    private ByteBuffer buffer;
+
+    private TextEncoder() {
+        this.buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+    }
+
+    static TextEncoder local() {
+        return LOCAL.get();
+    }
+
+    private ByteBuffer buffer(int capacity) {
+        if (capacity <= buffer.capacity()) {
+            buffer.clear();
+            return buffer;
+        }
+        if (capacity > MAX_RETAINED_CAPACITY) {
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        buffer = ByteBuffer.allocateDirect(Math.max(capacity, Integer.highestOneBit(capacity - 1) << 1));
+        return buffer;
+    }
+
+    /**
+     * Replaces the buffer with a larger one, keeping its content.
+     */
+    private ByteBuffer grow(ByteBuffer out, int minRemaining) {
+        final long required = (long) out.position() + minRemaining;
+        final int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(required, out.capacity() * 2L));
+        out.flip();
+        final ByteBuffer grown = buffer(capacity);
+        grown.put(out);
+        return grown;
+    }
+
+    /**
+     * Encodes the text as UTF-8 with a trailing null terminator. Unpaired surrogates are replaced like {@link String#getBytes} does.
+     *
+     * @param text the text
+     * @return the flipped buffer, only valid until the next call on this thread
+     */
+    ByteBuffer encode(CharSequence text) {
+        final int length = text.length();
+        // sized for ASCII, which is the common case, and grown as other characters need more bytes
+        ByteBuffer out = buffer(length + 1);
+        int i = 0;
+        // fast path for ASCII
+        while (i < length) {
+            final char c = text.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            out.put((byte) c);
+            i++;
+        }
+        while (i < length) {
+            // room for the longest sequence and the terminator
+            if (out.remaining() < 5) {
+                out = grow(out, 5);
+            }
+            final char c = text.charAt(i++);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(text.charAt(i))) {
+                    final int codePoint = Character.toCodePoint(c, text.charAt(i++));
+                    out.put((byte) (0xF0 | (codePoint >> 18)));
+                    out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    out.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    out.put(REPLACEMENT);
+                }
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        out.put((byte) 0);
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Copies already encoded UTF-8 text and appends a null terminator.
+     *
+     * @param utf8 the encoded text, its position is not changed
+     * @return the flipped buffer, only valid until the next call on this thread
+     */
+    ByteBuffer terminate(ByteBuffer utf8) {
+        final ByteBuffer out = buffer(utf8.remaining() + 1);
+        out.put(utf8.duplicate());
+        out.put((byte) 0);
+        out.flip();
+        return out;
+    }
+}
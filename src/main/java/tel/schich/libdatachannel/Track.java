@@ -6,26 +6,174 @@ import static tel.schich.libdatachannel.LibDataChannelNative.rtcDeleteTrack;
 import static tel.schich.libdatachannel.LibDataChannelNative.rtcGetTrackDescription;
 import static tel.schich.libdatachannel.LibDataChannelNative.rtcGetTrackDirection;
 import static tel.schich.libdatachannel.LibDataChannelNative.rtcGetTrackMid;
+import static tel.schich.libdatachannel.LibDataChannelNative.rtcIsClosed;
+import static tel.schich.libdatachannel.LibDataChannelNative.rtcIsOpen;
+import static tel.schich.libdatachannel.LibDataChannelNative.rtcSendMessage;
+import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetTrackClosedCallback;
+import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetTrackErrorCallback;
+import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetTrackMessageCallback;
+import static tel.schich.libdatachannel.LibDataChannelNative.rtcSetTrackOpenCallback;
+import static tel.schich.libdatachannel.Util.ensureDirect;
 import static tel.schich.libdatachannel.Util.mappedEnum;
 import static tel.schich.libdatachannel.Util.wrapError;
 
+import tel.schich.jniaccess.JNIAccess;
+
 import java.io.Closeable;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
+/**
+ * A media track, created from a {@link PeerConnection}. Its events are dispatched like those of a {@link DataChannel}, events of tracks are
+ * not written to an {@link EventRing}.
+ */
 public class Track implements Closeable {
     private final PeerConnection peer;
-    private final int trackHandle;
+    final int trackHandle;
+
+    public final EventListenerContainer<TrackCallback.Open> onOpen;
+    public final EventListenerContainer<TrackCallback.Closed> onClosed;
+    public final EventListenerContainer<TrackCallback.Error> onError;
+    public final EventListenerContainer<TrackCallback.Message> onMessage;
 
+    // reusable tasks for the events without payload
+    private final Runnable dispatchOpen;
+    private final Runnable dispatchClosed;
+
+    /**
+     * Wraps an existing track of the peer. Native events are only delivered to the instance the peer created for the handle, which is returned
+     * by {@link PeerConnection#addTrack(String)} and passed to the {@link PeerConnection#onTrack} handlers, so listeners should be registered
+     * there.
+     *
+     * @param peer        the peer the track belongs to
+     * @param trackHandle the native handle of the track
+     */
     public Track(final PeerConnection peer, final int trackHandle) {
+        this(peer, trackHandle, peer.childExecutor());
+    }
+
+    Track(final PeerConnection peer, final int trackHandle, final Executor executor) {
         this.peer = peer;
         this.trackHandle = trackHandle;
+
+        this.onOpen = new EventListenerContainer<>("TrackOpen", set -> rtcSetTrackOpenCallback(trackHandle, set), executor, peer.dispatchQueue, DispatchQueue.Delivery.GUARANTEED);
+        this.onClosed = new EventListenerContainer<>("TrackClosed", set -> rtcSetTrackClosedCallback(trackHandle, set), executor, peer.dispatchQueue, DispatchQueue.Delivery.GUARANTEED);
+        this.onError = new EventListenerContainer<>("TrackError", set -> rtcSetTrackErrorCallback(trackHandle, set), executor, peer.dispatchQueue, DispatchQueue.Delivery.GUARANTEED);
+        this.onMessage = new EventListenerContainer<>("TrackMessage", set -> rtcSetTrackMessageCallback(trackHandle, set), executor, peer.dispatchQueue, DispatchQueue.Delivery.DROPPABLE);
+
+        this.dispatchOpen = onOpen.dispatcher(TrackCallback.Open::onOpen, this);
+        this.dispatchClosed = onClosed.dispatcher(TrackCallback.Closed::onClosed, this);
+    }
+
+    private static void deliverError(TrackCallback.Error handler, Track track, String error) {
+        handler.onError(track, error);
+    }
+
+    private static void deliverMessage(TrackCallback.Message handler, Track track, ByteBuffer message) {
+        handler.onMessage(track, message);
+    }
+
+    @JNIAccess
+    void onNativeOpen() {
+        onOpen.dispatch(dispatchOpen);
+    }
+
+    @JNIAccess
+    void onNativeClosed() {
+        onClosed.dispatch(dispatchClosed);
+    }
+
+    @JNIAccess
+    void onNativeError(String error) {
+        onError.invoke(Track::deliverError, this, error);
+    }
+
+    @JNIAccess
+    void onNativeMessage(ByteBuffer message) {
+        if (onMessage.isInline()) {
+            onMessage.invoke(Track::deliverMessage, this, message);
+            return;
+        }
+        // the native message memory is only valid during this call, so copy it before handing it to the executor
+        final MessageBufferPool pool = peer.messageBufferPool;
+        if (pool == null) {
+            final ByteBuffer buffer = ByteBuffer.allocate(message.remaining()).put(message);
+            buffer.flip();
+            onMessage.invoke(Track::deliverMessage, this, buffer);
+        } else {
+            final ByteBuffer buffer = pool.copyOf(message);
+            onMessage.invoke(Track::deliverMessage, this, buffer, () -> pool.release(buffer));
+        }
     }
 
     public PeerConnection peer() {
         return peer;
     }
 
+    /**
+     * Sends a message on the track, an RTP packet unless a media handler on the track packetizes frames.
+     *
+     * @param data the message, must be a direct buffer
+     */
+    public void sendMessage(ByteBuffer data) {
+        ensureDirect(data);
+        wrapError("sendMessage", rtcSendMessage(trackHandle, data, data.position(), data.remaining()));
+    }
+
+    /**
+     * Attaches a packetizer to the track, after which {@link #sendFrame(ByteBuffer, long)} fragments whole frames into RTP packets natively.
+     *
+     * @param init the packetizer settings, its codec selects the packetizer
+     * @throws IllegalArgumentException if libdatachannel has no packetizer for the codec, e.g. for VP8 and VP9
+     */
+    public void setPacketizer(PacketizerInit init) {
+        switch (init.codec) {
+            case RTC_CODEC_H264:
+            case RTC_CODEC_H265:
+            case RTC_CODEC_AV1:
+            case RTC_CODEC_OPUS:
+            case RTC_CODEC_AAC:
+                break;
+            default:
+                throw new IllegalArgumentException("No packetizer available for codec " + init.codec);
+        }
+        wrapError("setPacketizer", LibDataChannelNative.setPacketizer(trackHandle, init.codec.codec, init.ssrc, init.cname, init.payloadType, init.clockRate,
+                init.maxFragmentSize, init.nalSeparator.separator, init.obuPacketization.packetization, init.srReporter,
+                init.nackResponderPackets));
+    }
+
+    /**
+     * Sends a frame through the packetizer attached with {@link #setPacketizer(PacketizerInit)}. The frame is fragmented into RTP packets
+     * directly from the buffer, without copying it into the Java heap or allocating per packet.
+     *
+     * @param frame     the frame, must be a direct buffer
+     * @param timestamp the RTP timestamp of the frame in units of the packetizer's clock rate, truncated to 32 bits
+     */
+    public void sendFrame(ByteBuffer frame, long timestamp) {
+        ensureDirect(frame);
+        wrapError("sendFrame", LibDataChannelNative.sendFrame(trackHandle, frame, frame.position(), frame.remaining(), timestamp));
+    }
+
+    /**
+     * Returns whether the track exists and is closed (not open and not connecting), false otherwise
+     *
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        return rtcIsClosed(trackHandle);
+    }
+
+    /**
+     * Returns whether the track exists and is open, false otherwise
+     *
+     * @return true if open
+     */
+    public boolean isOpen() {
+        return rtcIsOpen(trackHandle);
+    }
+
     // After this function has been called, tr must not be used in a function call anymore. This function will block until all scheduled callbacks
     // of tr return (except the one this function might be called in) and no other callback will be called for tr after it returns.
     public String description() {
@@ -51,6 +199,10 @@ public class Track implements Closeable {
     public void close() {
         peer.dropTrackState(trackHandle);
         wrapError("rtcDeleteTrack", rtcDeleteTrack(trackHandle));
+        onOpen.close();
+        onClosed.close();
+        onError.close();
+        onMessage.close();
     }
 
     @Override
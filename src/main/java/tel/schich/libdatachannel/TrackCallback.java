@@ -0,0 +1,44 @@
+package tel.schich.libdatachannel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Callback interfaces for {@link Track}
+ */
+public interface TrackCallback {
+    /**
+     * Called when the track was previously connecting and is now open.
+     */
+    @FunctionalInterface
+    interface Open {
+        void onOpen(Track track);
+    }
+
+    /**
+     * Called when the track was previously open and is now closed.
+     */
+    @FunctionalInterface
+    interface Closed {
+        void onClosed(Track track);
+    }
+
+    /**
+     * Called when the track experiences an error, either while connecting or open.
+     */
+    @FunctionalInterface
+    interface Error {
+        void onError(Track track, final String error);
+    }
+
+    /**
+     * Called when the track receives a message, an RTP or RTCP packet unless a media handler on the track processes them into frames.
+     * <p>
+     * The buffer must not be used after the handler returned. With {@link PeerConnection#INLINE_EXECUTOR} it refers to native memory that is
+     * only valid while the native callback runs, other executors receive a copy, taken from the {@link MessageBufferPool} if one is configured.
+     * </p>
+     */
+    @FunctionalInterface
+    interface Message {
+        void onMessage(Track track, ByteBuffer message);
+    }
+}
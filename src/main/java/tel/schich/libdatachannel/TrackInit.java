@@ -1,18 +1,41 @@
 package tel.schich.libdatachannel;
 
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Optional;
+
 public class TrackInit {
-    public static final TrackInit DEFAULT = new TrackInit(Track.Direction.DEFAULT, Track.Codec.DEFAULT);
+    public static final TrackInit DEFAULT = new TrackInit(Track.Direction.DEFAULT, Track.Codec.DEFAULT, 0, 0, null, null, null, null, null);
 
     private final Track.Direction direction;
     private final Track.Codec codec;
+    private final int payloadType;
+    private final int ssrc;
+    @Nullable
+    private final String mid;
+    @Nullable
+    private final String name;
+    @Nullable
+    private final String msid;
+    @Nullable
+    private final String trackId;
+    @Nullable
+    private final String profile;
 
-    private TrackInit(Track.Direction direction, Track.Codec codec) {
+    private TrackInit(Track.Direction direction, Track.Codec codec, int payloadType, int ssrc, @Nullable String mid, @Nullable String name, @Nullable String msid, @Nullable String trackId, @Nullable String profile) {
         this.direction = direction;
         this.codec = codec;
+        this.payloadType = payloadType;
+        this.ssrc = ssrc;
+        this.mid = mid;
+        this.name = name;
+        this.msid = msid;
+        this.trackId = trackId;
+        this.profile = profile;
     }
 
     public TrackInit withDirection(Track.Direction direction) {
-        return new TrackInit(direction, codec);
+        return new TrackInit(direction, codec, payloadType, ssrc, mid, name, msid, trackId, profile);
     }
 
     public Track.Direction direction() {
@@ -20,10 +43,87 @@ public class TrackInit {
     }
 
     public TrackInit withCodec(Track.Codec codec) {
-        return new TrackInit(direction, codec);
+        return new TrackInit(direction, codec, payloadType, ssrc, mid, name, msid, trackId, profile);
     }
 
     public Track.Codec codec() {
         return codec;
     }
+
+    /**
+     * the RTP payload type
+     */
+    public TrackInit withPayloadType(int payloadType) {
+        return new TrackInit(direction, codec, payloadType, ssrc, mid, name, msid, trackId, profile);
+    }
+
+    public int payloadType() {
+        return payloadType;
+    }
+
+    /**
+     * the SSRC of the RTP stream
+     */
+    public TrackInit withSsrc(int ssrc) {
+        return new TrackInit(direction, codec, payloadType, ssrc, mid, name, msid, trackId, profile);
+    }
+
+    public int ssrc() {
+        return ssrc;
+    }
+
+    /**
+     * (optional): the mid (media identifier), NULL for "video" or "audio" depending on the codec
+     */
+    public TrackInit withMid(String mid) {
+        return new TrackInit(direction, codec, payloadType, ssrc, mid, name, msid, trackId, profile);
+    }
+
+    public Optional<String> mid() {
+        return Optional.ofNullable(mid);
+    }
+
+    /**
+     * (optional): the name of the SSRC, used as cname
+     */
+    public TrackInit withName(String name) {
+        return new TrackInit(direction, codec, payloadType, ssrc, mid, name, msid, trackId, profile);
+    }
+
+    public Optional<String> name() {
+        return Optional.ofNullable(name);
+    }
+
+    /**
+     * (optional): the msid (media stream identifier)
+     */
+    public TrackInit withMsid(String msid) {
+        return new TrackInit(direction, codec, payloadType, ssrc, mid, name, msid, trackId, profile);
+    }
+
+    public Optional<String> msid() {
+        return Optional.ofNullable(msid);
+    }
+
+    /**
+     * (optional): the track identifier within the media stream
+     */
+    public TrackInit withTrackId(String trackId) {
+        return new TrackInit(direction, codec, payloadType, ssrc, mid, name, msid, trackId, profile);
+    }
+
+    public Optional<String> trackId() {
+        return Optional.ofNullable(trackId);
+    }
+
+    /**
+     * (optional): the codec profile, NULL for the codec's default
+     */
+    public TrackInit withProfile(String profile) {
+        return new TrackInit(direction, codec, payloadType, ssrc, mid, name, msid, trackId, profile);
+    }
+
+    public Optional<String> profile() {
+        return Optional.ofNullable(profile);
+    }
 }
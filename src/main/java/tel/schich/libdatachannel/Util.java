@@ -9,6 +9,7 @@ import tel.schich.libdatachannel.exception.UnknownFailureException;
 
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.Map;
@@ -30,6 +31,15 @@ class Util {
         }
     }
 
+    static String decodeUtf8(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), StandardCharsets.UTF_8);
+        }
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
     static InetSocketAddress parseAddress(String rawAddress) {
         int colonIndex = rawAddress.lastIndexOf(':');
         String ip = rawAddress.substring(0, colonIndex);
@@ -0,0 +1,77 @@
+package tel.schich.libdatachannel;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tel.schich.libdatachannel.PeerConnectionConfiguration.CertificateType;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how quickly peer connections get their local description, which needs their DTLS certificate, for the first peer of a certificate
+ * type and for the peers after it, with and without {@link LibDataChannel#prepareCertificate(CertificateType)}.
+ * <p>
+ * libdatachannel caches the certificate per type for the whole process, so every type can only be measured cold once per JVM: RSA is
+ * measured without preparing and ECDSA with preparing. If the cache works as expected, the first peer is only slow without preparing and
+ * later peers are equally fast in both cases. Run with {@code ./gradlew test -Plibdatachannel.benchmark=true}.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "libdatachannel.benchmark", matches = "true")
+class CertificateBenchmarkTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CertificateBenchmarkTest.class);
+    private static final int PEERS = 100;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @BeforeAll
+    static void warmUp() {
+        // takes loading the library and initializing the bindings out of the first measurement
+        LibDataChannel.initialize();
+        describePeer(CertificateType.DEFAULT);
+    }
+
+    /**
+     * Creates a peer connection with a data channel and returns the nanoseconds until its local description was generated.
+     */
+    private static long describePeer(CertificateType type) {
+        final CountDownLatch described = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        try (PeerConnection peer = PeerConnection.createPeer(PeerConnectionConfiguration.DEFAULT.withCertificateType(type))) {
+            peer.onLocalDescription.register((p, sdp, sdpType) -> described.countDown());
+            peer.createDataChannel("benchmark");
+            assertTrue(described.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "no local description within " + TIMEOUT_MILLIS + " ms");
+            return System.nanoTime() - start;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void measure(String label, CertificateType type) {
+        final long first = describePeer(type);
+        long later = 0;
+        for (int i = 0; i < PEERS; i++) {
+            later += describePeer(type);
+        }
+        LOGGER.info("{}: first peer {} ms ({} peers/s), later peers {} ms each ({} peers/s)", label,
+                String.format("%.2f", first / 1e6), String.format("%.1f", 1e9 / first),
+                String.format("%.2f", later / 1e6 / PEERS), String.format("%.1f", 1e9 * PEERS / later));
+    }
+
+    @Test
+    void rsaWithoutPreparedCertificate() {
+        measure("RSA, not prepared", CertificateType.RTC_CERTIFICATE_RSA);
+    }
+
+    @Test
+    void ecdsaWithPreparedCertificate() {
+        final long start = System.nanoTime();
+        LibDataChannel.prepareCertificate(CertificateType.RTC_CERTIFICATE_ECDSA).join();
+        LOGGER.info("ECDSA: prepared in {} ms", String.format("%.2f", (System.nanoTime() - start) / 1e6));
+        measure("ECDSA, prepared", CertificateType.RTC_CERTIFICATE_ECDSA);
+    }
+}
@@ -0,0 +1,63 @@
+package tel.schich.libdatachannel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import tel.schich.libdatachannel.PeerConnectionConfiguration.OverloadPolicy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+class DispatchQueueTest {
+
+    @Test
+    void handlerSubmittingToItsOwnFullQueueDoesNotDeadlock() throws InterruptedException {
+        final DispatchQueue queue = new DispatchQueue(1, OverloadPolicy.BLOCK);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch delivered = new CountDownLatch(3);
+        try {
+            queue.execute(executor, this, DispatchQueue.Delivery.GUARANTEED, () -> {
+                delivered.countDown();
+                // like a handler closing its channel, which synchronously triggers more callbacks
+                queue.execute(executor, this, DispatchQueue.Delivery.GUARANTEED, delivered::countDown, null);
+                queue.execute(executor, this, DispatchQueue.Delivery.GUARANTEED, delivered::countDown, null);
+            }, null);
+            assertTrue(delivered.await(1, TimeUnit.SECONDS), "events submitted by a handler were not delivered");
+            assertEquals(1, queue.overflowedEvents());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void guaranteedEventsDoNotBlockWithDropPolicies() throws InterruptedException {
+        final DispatchQueue queue = new DispatchQueue(1, OverloadPolicy.DROP_NEWEST);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final int[] completions = new int[1];
+        try {
+            queue.execute(executor, this, DispatchQueue.Delivery.DROPPABLE, () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, null);
+            // the executor may not have started the first event yet, so the queue stays full until it is released
+            queue.execute(executor, this, DispatchQueue.Delivery.DROPPABLE, () -> {}, null);
+            queue.execute(executor, this, DispatchQueue.Delivery.DROPPABLE, () -> {}, () -> completions[0]++);
+            final long start = System.nanoTime();
+            queue.execute(executor, this, DispatchQueue.Delivery.GUARANTEED, () -> {}, null);
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(DispatchQueue.BLOCK_TIMEOUT_MILLIS));
+            assertEquals(1, completions[0]);
+            assertTrue(queue.droppedEvents() >= 1);
+            assertTrue(queue.overflowedEvents() >= 1);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
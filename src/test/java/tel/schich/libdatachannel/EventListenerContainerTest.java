@@ -0,0 +1,92 @@
+package tel.schich.libdatachannel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+/**
+ * Checks that dispatching through an {@link EventListenerContainer} on the inline executor does not allocate. This only covers the container:
+ * the native callbacks still create one {@link ByteBuffer} view per message before it reaches the container, with
+ * {@code NewDirectByteBuffer} or, with an {@link EventRing}, a slice of the ring memory.
+ */
+class EventListenerContainerTest {
+    private static final int WARMUP_ITERATIONS = 100_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private com.sun.management.ThreadMXBean threads;
+
+    @BeforeEach
+    void setUp() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "thread allocation accounting is not available");
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "thread allocation accounting is not supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static final class Counter {
+        long events;
+        long bytes;
+
+        void onMessage(String channel, ByteBuffer message) {
+            events++;
+            bytes += message.remaining();
+        }
+
+        void onEvent(String channel) {
+            events++;
+        }
+    }
+
+    @Test
+    void inlineContainerInvokeDoesNotAllocate() {
+        final EventListenerContainer<Counter> container = new EventListenerContainer<>("Message", set -> {}, PeerConnection.INLINE_EXECUTOR);
+        final Counter counter = new Counter();
+        container.register(counter);
+        final String channel = "channel";
+        final ByteBuffer message = ByteBuffer.allocateDirect(64);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            container.invoke(Counter::onMessage, channel, message);
+        }
+        final long before = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            container.invoke(Counter::onMessage, channel, message);
+        }
+        final long allocated = allocatedBytes() - before;
+
+        assertEquals(WARMUP_ITERATIONS + ITERATIONS, counter.events);
+        // a single allocation per event would amount to at least 16 bytes each
+        assertTrue(allocated < ITERATIONS, "dispatching " + ITERATIONS + " messages allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void inlineContainerDispatcherDoesNotAllocate() {
+        final EventListenerContainer<Counter> container = new EventListenerContainer<>("Event", set -> {}, PeerConnection.INLINE_EXECUTOR);
+        final Counter counter = new Counter();
+        container.register(counter);
+        final Runnable dispatcher = container.dispatcher(Counter::onEvent, "channel");
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            container.dispatch(dispatcher);
+        }
+        final long before = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            container.dispatch(dispatcher);
+        }
+        final long allocated = allocatedBytes() - before;
+
+        assertEquals(WARMUP_ITERATIONS + ITERATIONS, counter.events);
+        assertTrue(allocated < ITERATIONS, "dispatching " + ITERATIONS + " events allocated " + allocated + " bytes");
+    }
+}